@@ -0,0 +1,101 @@
+package peggy;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+
+/**
+ * Bubbles per second: {@link DialogBox} built in code against the previous bubble, which loaded
+ * {@code DialogBox.fxml} (kept as {@code DialogBoxBaseline.fxml}) for every message and flipped bot bubbles
+ * by reversing a copy of the children.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BubbleBenchmark {
+    private static final String TEXT = "Got it. I've added this task:\n  [T][ ] read book\nNow you have 3 tasks.";
+
+    private Image img;
+
+    @Setup(Level.Trial)
+    public void startToolkit() {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException e) {
+            // already started by an earlier trial in this JVM
+        }
+        img = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/images/bot.png")));
+    }
+
+    @Benchmark
+    public DialogBox programmatic() {
+        return DialogBox.getBotDialog(TEXT, img);
+    }
+
+    @Benchmark
+    public HBox fxmlPerBubble() {
+        return FxmlBubble.getBotDialog(TEXT, img);
+    }
+
+    /**
+     * The bubble as it was before: FXML loaded per instance, bot bubbles flipped after loading.
+     */
+    public static class FxmlBubble extends HBox {
+        @FXML private Label dialog;
+        @FXML private ImageView displayPicture;
+
+        private FxmlBubble(String text, Image img) {
+            try {
+                FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/DialogBoxBaseline.fxml"));
+                loader.setRoot(this);
+                loader.setController(this);
+                loader.load();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            dialog.setText(text);
+            dialog.setWrapText(true);
+            dialog.setMaxWidth(320);
+            dialog.getStyleClass().add("bubble");
+            displayPicture.setImage(img);
+        }
+
+        static FxmlBubble getBotDialog(String text, Image img) {
+            FxmlBubble db = new FxmlBubble(text, img);
+            db.dialog.getStyleClass().add("bot-bubble");
+            ObservableList<Node> nodes = FXCollections.observableArrayList(db.getChildren());
+            Collections.reverse(nodes);
+            db.getChildren().setAll(nodes);
+            db.setAlignment(Pos.TOP_LEFT);
+            return db;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package peggy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TaskList#find(String)} and {@link TaskList#fuzzyFind(String, int)} over generated tasks
+ * ({@link TaskData}), across list sizes. The indexes are built before measuring.
+ * <p>
+ *     A common word matches about one task in ten, a unique number matches one, a phrase is looked up by
+ *     its longest word and then checked, and a keyword with a space on each side cannot use the index.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private TaskList tasks;
+    private String unique;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        tasks = new TaskList(TaskData.tasks(size));
+        unique = Integer.toString(size / 2);
+        tasks.find("warm");
+        tasks.fuzzyFind("warm", 1);
+    }
+
+    @Benchmark
+    public TaskList find_commonWord() {
+        return tasks.find("report");
+    }
+
+    @Benchmark
+    public TaskList find_uniqueWord() {
+        return tasks.find(unique);
+    }
+
+    @Benchmark
+    public TaskList find_phrase() {
+        return tasks.find("submit report");
+    }
+
+    @Benchmark
+    public TaskList find_scan() {
+        return tasks.find(" ");
+    }
+
+    @Benchmark
+    public TaskList fuzzyFind_typo() {
+        return tasks.fuzzyFind("groceris", 10);
+    }
+}
@@ -0,0 +1,101 @@
+package peggy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peggy.task.Task;
+
+/**
+ * Requests per second against {@link HttpApi} from 8 concurrent clients on the same machine, each keeping
+ * its connection alive: a page of the list, a search, an add, and the whole list of 10 000 generated tasks
+ * ({@link TaskData}) streamed in chunks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class HttpApiBenchmark {
+    private static final int TASKS = 10_000;
+
+    private Path dir;
+    private Peggy peggy;
+    private HttpApi api;
+    private HttpClient client;
+    private HttpRequest page;
+    private HttpRequest search;
+    private HttpRequest add;
+    private HttpRequest all;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        dir = TaskData.tempDir();
+        peggy = new Peggy(dir.resolve("tasks.txt").toString());
+        for (Task t : TaskData.tasks(TASKS)) {
+            peggy.add(t);
+        }
+        api = new HttpApi(peggy, 0);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://localhost:" + api.getPort() + "/tasks";
+        page = HttpRequest.newBuilder(URI.create(base + "?page=3&size=20")).build();
+        search = HttpRequest.newBuilder(URI.create(base + "/search?q=submit+report")).build();
+        add = HttpRequest.newBuilder(URI.create(base))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("type=todo&description=from+the+benchmark"))
+                .build();
+        all = HttpRequest.newBuilder(URI.create(base)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        api.close();
+        peggy.close();
+        TaskData.delete(dir);
+    }
+
+    @Benchmark
+    public int listPage() throws Exception {
+        return send(page);
+    }
+
+    @Benchmark
+    public int search() throws Exception {
+        return send(search);
+    }
+
+    @Benchmark
+    public int add() throws Exception {
+        return send(add);
+    }
+
+    @Benchmark
+    public int listAll() throws Exception {
+        return send(all);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return response.body().length;
+    }
+}
@@ -0,0 +1,133 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import peggy.task.Task;
+
+/**
+ * Date/time parsing: the single-pass lexer in {@link Parser#parseDateTime(String)} against the previous
+ * chain of formatters, each accepted shape on its own, and the effect on loading a save file of deadlines
+ * and events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    private static final String[] INPUTS = Arrays.stream(TaskData.DATE_TIMES)
+            .map(shape -> shape[1])
+            .toArray(String[]::new);
+    private static final int LOAD_TASKS = 100_000;
+
+    private Path saveFile;
+
+    @Setup(Level.Trial)
+    public void writeSaveFile() throws IOException {
+        saveFile = Files.createTempFile("peggy-bench", ".txt");
+        List<String> lines = new ArrayList<>(LOAD_TASKS);
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 9, 0);
+        for (int i = 0; i < LOAD_TASKS; i++) {
+            LocalDateTime at = start.plusMinutes(37L * i);
+            lines.add(i % 2 == 0
+                    ? "D | 0 | submit report " + i + " | " + at
+                    : "E | 1 | meeting " + i + " | " + at + " | " + at.plusHours(1));
+        }
+        Files.write(saveFile, lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSaveFile() throws IOException {
+        Files.deleteIfExists(saveFile);
+    }
+
+    @Benchmark
+    public void parseDateTime_lexer(Blackhole bh) {
+        for (String s : INPUTS) {
+            bh.consume(Parser.parseDateTime(s));
+        }
+    }
+
+    @Benchmark
+    public void parseDateTime_formatterChain(Blackhole bh) {
+        for (String s : INPUTS) {
+            bh.consume(parseWithFormatters(s));
+        }
+    }
+
+    @Benchmark
+    public LocalDateTime parseDateTime_eachShape(Shape shape) {
+        return Parser.parseDateTime(shape.input);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Task> load() throws IOException {
+        return new Storage(saveFile.toString()).load();
+    }
+
+    /**
+     * One accepted date/time shape per run, named as in {@link TaskData#DATE_TIMES}.
+     */
+    @State(Scope.Thread)
+    public static class Shape {
+        @Param({"iso", "dmyHhmm", "dmyHhColonMm", "ymdHhmm", "ymdHhColonMm", "dmyDate", "ymdDate"})
+        private String name;
+
+        private String input;
+
+        @Setup(Level.Trial)
+        public void pick() {
+            for (String[] shape : TaskData.DATE_TIMES) {
+                if (shape[0].equals(name)) {
+                    input = shape[1];
+                }
+            }
+        }
+    }
+
+    // Parser.parseDateTime before the lexer: each shape is tried in turn and a miss throws
+    private static LocalDateTime parseWithFormatters(String raw) {
+        String s = raw.trim();
+        try { return LocalDateTime.parse(s); } catch (DateTimeParseException ignored) {}
+        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy HHmm")); }
+        catch (DateTimeParseException ignored) {}
+        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy HH:mm")); }
+        catch (DateTimeParseException ignored) {}
+        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm")); }
+        catch (DateTimeParseException ignored) {}
+        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")); }
+        catch (DateTimeParseException ignored) {}
+        try { return LocalDate.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy")).atStartOfDay(); }
+        catch (DateTimeParseException ignored) {}
+        try { return LocalDate.parse(s).atStartOfDay(); }
+        catch (DateTimeParseException ignored) {}
+        throw new IllegalArgumentException("Invalid date/time. Try: 2/12/2019 1800 or 2019-12-02 1800");
+    }
+}
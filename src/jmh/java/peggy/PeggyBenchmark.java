@@ -0,0 +1,124 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peggy.task.Task;
+
+/**
+ * End to end: {@link Peggy#getResponse(String)} for one typical input of every {@link CommandType}, on a
+ * list of 10 000 generated tasks ({@link TaskData}) saved with the journal, as in the app.
+ * <p>
+ *     Commands that add or delete a task are undone after each call, outside the measurement, so every
+ *     call sees the same list; {@code more} gets a fresh {@code list} before each call in the same way.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeggyBenchmark {
+    private static final int TASKS = 10_000;
+    private static final Map<CommandType, String> INPUTS = new EnumMap<>(CommandType.class);
+
+    static {
+        INPUTS.put(CommandType.BYE, "bye");
+        INPUTS.put(CommandType.LIST, "list");
+        INPUTS.put(CommandType.MORE, "more");
+        INPUTS.put(CommandType.MARK, "mark 5000");
+        INPUTS.put(CommandType.UNMARK, "unmark 5000");
+        INPUTS.put(CommandType.DELETE, "delete " + TASKS);
+        INPUTS.put(CommandType.TODO, "todo read book");
+        INPUTS.put(CommandType.DEADLINE, "deadline return book /by 2/12/2026 1800");
+        INPUTS.put(CommandType.EVENT, "event project meeting /from 2/12/2026 1400 /to 2/12/2026 1600");
+        INPUTS.put(CommandType.FIND, "find submit report");
+        INPUTS.put(CommandType.SCHEDULE, "schedule 2026-03-02");
+        INPUTS.put(CommandType.BETWEEN, "between 2026-03-01 2026-03-07");
+        INPUTS.put(CommandType.UPCOMING, "upcoming 5");
+        INPUTS.put(CommandType.OVERDUE, "overdue");
+        INPUTS.put(CommandType.STATS, "stats");
+        INPUTS.put(CommandType.HELP, "help");
+        INPUTS.put(CommandType.HELLO, "hello");
+        INPUTS.put(CommandType.UNKNOWN, "blah");
+        // RUN is filled in with the script's path
+    }
+
+    @Param
+    private CommandType command;
+
+    private Path dir;
+    private Peggy peggy;
+    private String input;
+    private Task spare;
+    private final List<Task> scratch = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        dir = TaskData.tempDir();
+        Path saveFile = dir.resolve("tasks.txt");
+        new Storage(saveFile.toString()).save(TaskData.tasks(TASKS));
+        peggy = new Peggy(saveFile.toString());
+
+        Path script = dir.resolve("script.txt");
+        Files.write(script, List.of("list 1 5", "find report", "upcoming 3", "schedule 2026-03-02"));
+        input = command == CommandType.RUN ? "run " + script : INPUTS.get(command);
+        spare = TaskData.tasks(1).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        peggy.close();
+        TaskData.delete(dir);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        if (command == CommandType.MORE) {
+            peggy.getResponse("list 1 20");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void undo() {
+        scratch.clear();
+        switch (command) {
+            case TODO:
+            case DEADLINE:
+            case EVENT:
+                peggy.delete(Integer.toString(TASKS + 1), scratch);
+                break;
+            case DELETE:
+                peggy.add(spare);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Benchmark
+    public String getResponse() {
+        return peggy.getResponse(input);
+    }
+}
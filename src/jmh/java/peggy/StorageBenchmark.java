@@ -0,0 +1,81 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peggy.task.Task;
+
+/**
+ * Loading and saving a whole save file of generated tasks ({@link TaskData}) in each format, across sizes.
+ * Single shots, since a load of a million tasks takes long enough to time on its own.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"TEXT", "BINARY"})
+    private Storage.Format format;
+
+    private Path saveFile;
+    private Path outFile;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void writeSaveFile() throws IOException {
+        saveFile = TaskData.saveFile(size, format);
+        outFile = Files.createTempFile("peggy-bench", ".out");
+        tasks = TaskData.tasks(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(saveFile);
+        Files.deleteIfExists(outFile);
+    }
+
+    @Benchmark
+    public List<Task> load() throws IOException {
+        return new Storage(saveFile.toString()).load();
+    }
+
+    /**
+     * Time until the first task can be shown with {@link TaskList.Backend#LAZY}, against {@link #load()};
+     * a binary file is loaded in full either way.
+     */
+    @Benchmark
+    public Task loadLazilyThenGetFirst() throws IOException {
+        List<Task> lazy = new Storage(saveFile.toString()).loadLazily();
+        return lazy.isEmpty() ? null : lazy.get(0);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        Storage storage = new Storage(outFile.toString());
+        storage.setFormat(format);
+        storage.save(tasks);
+        return outFile;
+    }
+}
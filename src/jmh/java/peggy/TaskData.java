@@ -0,0 +1,120 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Synthetic task lists for the benchmarks, the same for a given size and seed so runs can be compared.
+ * <p>
+ *     Lists mix todos, deadlines and events in equal parts, with two to five words drawn from a small
+ *     vocabulary (so keywords match many tasks) and a number that makes every description unique. Times
+ *     fall on the half hour over the two years from {@link #START}, and about a quarter of tasks are done.
+ * </p>
+ */
+final class TaskData {
+    static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 9, 0);
+    static final long SEED = 42;
+
+    /**
+     * One date/time in each shape {@link Parser#parseDateTime(String)} accepts, with the shape as its name.
+     */
+    static final String[][] DATE_TIMES = {
+        {"iso", "2019-12-02T18:00"},
+        {"dmyHhmm", "2/12/2019 1800"},
+        {"dmyHhColonMm", "2/12/2019 18:00"},
+        {"ymdHhmm", "2019-12-02 1800"},
+        {"ymdHhColonMm", "2019-12-02 18:00"},
+        {"dmyDate", "2/12/2019"},
+        {"ymdDate", "2019-12-02"},
+    };
+
+    private static final String[] WORDS = {
+        "read", "book", "return", "submit", "report", "meeting", "project", "call", "mum", "buy", "groceries",
+        "review", "draft", "lecture", "tutorial", "gym", "dentist", "pay", "rent", "plan", "trip", "fix",
+        "bug", "write", "essay", "team", "lunch", "email", "boss", "clean", "room", "exam",
+    };
+    private static final int HALF_HOURS = 2 * 365 * 48;
+
+    private TaskData() {
+    }
+
+    /**
+     * Returns {@code count} tasks generated from {@link #SEED}.
+     */
+    static ArrayList<Task> tasks(int count) {
+        return tasks(count, SEED);
+    }
+
+    static ArrayList<Task> tasks(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Task> tasks = new ArrayList<>(count);
+        StringBuilder desc = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            desc.setLength(0);
+            int words = 2 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                desc.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            desc.append(i);
+            LocalDateTime at = START.plusMinutes(30L * random.nextInt(HALF_HOURS));
+            Task t;
+            switch (i % 3) {
+                case 0:
+                    t = new ToDo(desc.toString());
+                    break;
+                case 1:
+                    t = new Deadline(desc.toString(), at);
+                    break;
+                default:
+                    t = new Event(desc.toString(), at, at.plusMinutes(30L * (1 + random.nextInt(8))));
+            }
+            if (random.nextInt(4) == 0) {
+                t.markAsDone();
+            }
+            tasks.add(t);
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes {@code count} generated tasks to a new temporary save file in the given format.
+     */
+    static Path saveFile(int count, Storage.Format format) throws IOException {
+        Path file = Files.createTempFile("peggy-bench", format == Storage.Format.BINARY ? ".bin" : ".txt");
+        Storage storage = new Storage(file.toString());
+        storage.setFormat(format);
+        storage.save(tasks(count));
+        return file;
+    }
+
+    /**
+     * Returns a new, empty temporary directory for a Peggy save file and its journal.
+     */
+    static Path tempDir() throws IOException {
+        return Files.createTempDirectory("peggy-bench");
+    }
+
+    /**
+     * Deletes a directory made by {@link #tempDir()} with everything in it.
+     */
+    static void delete(Path dir) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            files.forEach(paths::add);
+        }
+        for (Path p : paths) {
+            Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,145 @@
+package peggy;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Positional operations on {@link TaskList}, now backed by {@link TaskTree}, against the previous
+ * {@code ArrayList} of tasks with a parallel {@link IntList} of ids, across list sizes.
+ * <p>
+ *     Delete benchmarks add a task back after each removal, so the list keeps its size.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskListBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private TaskList tree;
+    private ArrayTaskList array;
+    private Task extra;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        ArrayList<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new ToDo("task " + i));
+        }
+        tree = new TaskList(new ArrayList<>(tasks));
+        array = new ArrayTaskList(tasks);
+        extra = new ToDo("extra");
+    }
+
+    @Benchmark
+    public Task deleteFront_tree() {
+        Task t = tree.remove(0);
+        tree.add(extra);
+        return t;
+    }
+
+    @Benchmark
+    public Task deleteFront_arrayList() {
+        Task t = array.remove(0);
+        array.add(extra);
+        return t;
+    }
+
+    @Benchmark
+    public Task deleteMiddle_tree() {
+        Task t = tree.remove(size / 2);
+        tree.add(extra);
+        return t;
+    }
+
+    @Benchmark
+    public Task deleteMiddle_arrayList() {
+        Task t = array.remove(size / 2);
+        array.add(extra);
+        return t;
+    }
+
+    @Benchmark
+    public Task get_tree() {
+        cursor = (cursor + 7919) % size;
+        return tree.get(cursor);
+    }
+
+    @Benchmark
+    public Task get_arrayList() {
+        cursor = (cursor + 7919) % size;
+        return array.get(cursor);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int iterate_tree() {
+        int n = 0;
+        for (Task t : tree.asList()) {
+            n += t.isDone() ? 1 : 0;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int iterate_arrayList() {
+        int n = 0;
+        for (Task t : array.tasks) {
+            n += t.isDone() ? 1 : 0;
+        }
+        return n;
+    }
+
+    /**
+     * The storage TaskList used before: tasks and their ids in two arrays shifted on every removal.
+     */
+    private static class ArrayTaskList {
+        private final ArrayList<Task> tasks;
+        private final IntList ids;
+        private int nextId;
+
+        ArrayTaskList(ArrayList<Task> tasks) {
+            this.tasks = tasks;
+            this.ids = new IntList(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                ids.add(nextId++);
+            }
+        }
+
+        void add(Task t) {
+            tasks.add(t);
+            ids.add(nextId++);
+        }
+
+        Task get(int index) {
+            return tasks.get(index);
+        }
+
+        Task remove(int index) {
+            ids.removeAt(index);
+            return tasks.remove(index);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peggy.task.Task;
+
+/**
+ * {@link TaskList} with each {@link TaskList.Backend}, on generated tasks ({@link TaskData}). Run with
+ * {@code -prof gc} to compare what each allocates; the columnar and mapped stores build a task on every read.
+ * The mapped store is built by refilling one file in a temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskStoreBenchmark {
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"TREE", "COLUMNAR", "MAPPED"})
+    private TaskList.Backend backend;
+
+    private List<Task> generated;
+    private Path dir;
+    private MappedTaskStore mapped;
+    private TaskList tasks;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        generated = TaskData.tasks(size);
+        if (backend == TaskList.Backend.MAPPED) {
+            dir = TaskData.tempDir();
+            mapped = MappedTaskStore.open(dir.resolve("tasks.map"));
+            mapped.reset(generated);
+            tasks = new TaskList(mapped, backend);
+        } else {
+            tasks = new TaskList(generated, backend);
+        }
+        tasks.upcoming(TaskData.START, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        if (mapped != null) {
+            mapped.close();
+            TaskData.delete(dir);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Task> build() {
+        if (mapped != null) {
+            mapped.reset(generated);
+            return mapped;
+        }
+        return new TaskList(generated, backend).asList();
+    }
+
+    @Benchmark
+    public Task get() {
+        cursor = (cursor + 7919) % size;
+        return tasks.get(cursor);
+    }
+
+    @Benchmark
+    public Task markAndUnmark() {
+        cursor = (cursor + 7919) % size;
+        tasks.markAsDone(cursor);
+        return tasks.markAsNotDone(cursor);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int iterate() {
+        int n = 0;
+        for (Task t : tasks.asList()) {
+            n += t.isDone() ? 1 : 0;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Task> snapshot() {
+        return tasks.snapshot();
+    }
+}
@@ -0,0 +1,238 @@
+package peggy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Reads and writes the compact binary snapshot format.
+ * <p>
+ *     Layout (all integers are unsigned LEB128 varints unless noted):
+ *     magic {@code 89 50 47 59} ("\x89PGY"), version byte, generation, task count, then per task:
+ *     a flags byte (bits 0-1 type T/D/E, bit 2 done, bit 3 sub-minute times),
+ *     a description reference, and for deadlines/events the times as zigzag varint epoch minutes
+ *     (plus nanos within the minute if bit 3 is set).
+ *     A description reference of 0 is followed by a new string (length + UTF-8), which is added to the
+ *     dictionary; reference n refers to the (n-1)th dictionary entry, so repeated descriptions are stored once.
+ * </p>
+ */
+class BinaryCodec {
+    static final byte VERSION = 1;
+
+    private static final byte[] MAGIC = {(byte) 0x89, 'P', 'G', 'Y'};
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int FLAG_DONE = 1 << 2;
+    private static final int FLAG_PRECISE = 1 << 3;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Returns whether the file starts with the binary snapshot magic.
+     */
+    static boolean isBinary(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            return Arrays.equals(head, MAGIC);
+        }
+    }
+
+    /**
+     * Reads a binary snapshot.
+     *
+     * @param path File to read.
+     * @param tasks List the tasks are appended to.
+     * @return The snapshot generation stored in the header.
+     * @throws IOException If the file is truncated, corrupt or of an unsupported version.
+     */
+    static long read(Path path, List<Task> tasks) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) {
+                throw new IOException("Not a binary save file: " + path);
+            }
+            int version = in.read();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save file version " + version + " in " + path);
+            }
+
+            long generation = readVarLong(in);
+            long count = readVarLong(in);
+            ArrayList<String> dictionary = new ArrayList<>();
+            byte[] scratch = new byte[256];
+            for (long i = 0; i < count; i++) {
+                int flags = readByte(in);
+                int ref = (int) readVarLong(in);
+                String desc;
+                if (ref == 0) {
+                    int len = (int) readVarLong(in);
+                    if (len > scratch.length) {
+                        scratch = new byte[Math.max(len, scratch.length * 2)];
+                    }
+                    if (in.readNBytes(scratch, 0, len) != len) {
+                        throw new EOFException("Truncated save file: " + path);
+                    }
+                    desc = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                    dictionary.add(desc);
+                } else if (ref <= dictionary.size()) {
+                    desc = dictionary.get(ref - 1);
+                } else {
+                    throw new IOException("Corrupt save file: bad description reference in " + path);
+                }
+
+                boolean isPrecise = (flags & FLAG_PRECISE) != 0;
+                Task t;
+                switch (flags & 3) {
+                    case TYPE_TODO:
+                        t = new ToDo(desc);
+                        break;
+                    case TYPE_DEADLINE:
+                        t = new Deadline(desc, readTime(in, isPrecise));
+                        break;
+                    case TYPE_EVENT:
+                        LocalDateTime from = readTime(in, isPrecise);
+                        t = new Event(desc, from, readTime(in, isPrecise));
+                        break;
+                    default:
+                        throw new IOException("Corrupt save file: unknown task type in " + path);
+                }
+                if ((flags & FLAG_DONE) != 0) {
+                    t.markAsDone();
+                }
+                tasks.add(t);
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Writes tasks as a binary snapshot, replacing the file's content.
+     *
+     * @param path File to write.
+     * @param tasks Tasks to write.
+     * @param generation Snapshot generation to record in the header.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    static void write(Path path, List<Task> tasks, long generation) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), 64 * 1024)) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeVarLong(out, generation);
+            writeVarLong(out, tasks.size());
+
+            HashMap<String, Integer> dictionary = new HashMap<>();
+            for (Task task : tasks) {
+                int type;
+                LocalDateTime first = null;
+                LocalDateTime second = null;
+                if (task instanceof Deadline d) {
+                    type = TYPE_DEADLINE;
+                    first = d.getBy();
+                } else if (task instanceof Event e) {
+                    type = TYPE_EVENT;
+                    first = e.getFromTime();
+                    second = e.getToTime();
+                } else {
+                    type = TYPE_TODO;
+                }
+
+                int flags = type;
+                if (task.isDone()) {
+                    flags |= FLAG_DONE;
+                }
+                boolean isPrecise = (first != null && nanosOfMinute(first) != 0)
+                        || (second != null && nanosOfMinute(second) != 0);
+                if (isPrecise) {
+                    flags |= FLAG_PRECISE;
+                }
+                out.write(flags);
+
+                Integer ref = dictionary.get(task.getDescription());
+                if (ref != null) {
+                    writeVarLong(out, ref);
+                } else {
+                    dictionary.put(task.getDescription(), dictionary.size() + 1);
+                    byte[] bytes = task.getDescription().getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, 0);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes);
+                }
+
+                if (first != null) {
+                    writeTime(out, first, isPrecise);
+                }
+                if (second != null) {
+                    writeTime(out, second, isPrecise);
+                }
+            }
+        }
+    }
+
+    private static long nanosOfMinute(LocalDateTime dt) {
+        return dt.getSecond() * NANOS_PER_SECOND + dt.getNano();
+    }
+
+    private static void writeTime(OutputStream out, LocalDateTime dt, boolean isPrecise) throws IOException {
+        long minutes = Math.floorDiv(dt.toEpochSecond(ZoneOffset.UTC), 60);
+        writeVarLong(out, (minutes << 1) ^ (minutes >> 63)); // zigzag
+        if (isPrecise) {
+            writeVarLong(out, nanosOfMinute(dt));
+        }
+    }
+
+    private static LocalDateTime readTime(InputStream in, boolean isPrecise) throws IOException {
+        long zigzag = readVarLong(in);
+        long minutes = (zigzag >>> 1) ^ -(zigzag & 1);
+        long nanos = isPrecise ? readVarLong(in) : 0;
+        return LocalDateTime.ofEpochSecond(minutes * 60 + nanos / NANOS_PER_SECOND,
+                (int) (nanos % NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt save file: varint too long");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated save file");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,67 @@
+package peggy;
+
+import java.util.function.Consumer;
+
+/**
+ * Output sink that passes text on in chunks of whole lines, so a long response can be shown piece by piece
+ * (for example one dialog bubble per chunk) instead of as one huge string.
+ */
+public class ChunkedSink implements Appendable {
+    private final int chunkSize;
+    private final Consumer<String> consumer;
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Creates a sink that, once {@code chunkSize} characters are buffered, hands on everything up to the
+     * last line break.
+     *
+     * @param chunkSize Characters to collect before passing on a chunk.
+     * @param consumer Receives each chunk.
+     */
+    public ChunkedSink(int chunkSize, Consumer<String> consumer) {
+        this.chunkSize = chunkSize;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public ChunkedSink append(CharSequence csq) {
+        buffer.append(csq);
+        emitFullChunk();
+        return this;
+    }
+
+    @Override
+    public ChunkedSink append(CharSequence csq, int start, int end) {
+        buffer.append(csq, start, end);
+        emitFullChunk();
+        return this;
+    }
+
+    @Override
+    public ChunkedSink append(char c) {
+        buffer.append(c);
+        emitFullChunk();
+        return this;
+    }
+
+    /**
+     * Passes on whatever is still buffered.
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            consumer.accept(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    private void emitFullChunk() {
+        if (buffer.length() < chunkSize) {
+            return;
+        }
+        int cut = buffer.lastIndexOf("\n") + 1;
+        if (cut > 0) {
+            consumer.accept(buffer.substring(0, cut));
+            buffer.delete(0, cut);
+        }
+    }
+}
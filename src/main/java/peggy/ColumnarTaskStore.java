@@ -0,0 +1,316 @@
+package peggy;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Tasks kept as columns of primitives rather than as objects, for lists of millions of tasks: a type byte,
+ * a done bit, two epoch-minute times and an id and description handle per task, about 25 bytes plus the
+ * description text, which is stored once however many tasks share it ({@link DescriptionPool}).
+ * <p>
+ *     Reading a task builds a {@link ToDo}, {@link Deadline} or {@link Event} from the columns on the spot.
+ *     Such a task is a copy: marking it does not change the store, and later changes to the store do not
+ *     show in it. Appending is amortized O(1), as is marking; getting by id is a binary search. Inserting or
+ *     removing shifts the columns after the position, so bulk removals are done in one pass.
+ * </p>
+ * <p>
+ *     Times are kept to the minute, as {@link Parser} produces them; the rare time with seconds keeps them
+ *     in a side table.
+ * </p>
+ */
+class ColumnarTaskStore extends AbstractList<Task> implements TaskStore {
+    private static final byte TYPE_TODO = 0;
+    private static final byte TYPE_DEADLINE = 1;
+    private static final byte TYPE_EVENT = 2;
+    private static final byte FLAG_PRECISE = 1 << 2; // times have seconds; see preciseNanos
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private byte[] types;
+    private final BitSet done;
+    private long[] firstTimes; // due time of deadlines, start of events
+    private long[] secondTimes; // end of events
+    private int[] ids;
+    private int[] descriptions; // handles into pool
+    private int size;
+    private DescriptionPool pool;
+    private int removedSincePacked; // tasks removed since the pool last held only live descriptions
+    // nanos within the minute of {first, second} time, by id, for times with seconds
+    private final HashMap<Integer, long[]> preciseNanos;
+
+    /**
+     * Stores the given tasks, numbering them from {@code firstId} upwards.
+     */
+    ColumnarTaskStore(List<Task> tasks, int firstId) {
+        int capacity = Math.max(tasks.size(), 16);
+        this.types = new byte[capacity];
+        this.done = new BitSet(capacity);
+        this.firstTimes = new long[capacity];
+        this.secondTimes = new long[capacity];
+        this.ids = new int[capacity];
+        this.descriptions = new int[capacity];
+        this.pool = new DescriptionPool();
+        this.preciseNanos = new HashMap<>();
+        for (Task t : tasks) {
+            insert(size, firstId + size, t);
+        }
+    }
+
+    // copies the columns of another store; the pool is shared read-only
+    private ColumnarTaskStore(ColumnarTaskStore other) {
+        this.types = Arrays.copyOf(other.types, other.size);
+        this.done = (BitSet) other.done.clone();
+        this.firstTimes = Arrays.copyOf(other.firstTimes, other.size);
+        this.secondTimes = Arrays.copyOf(other.secondTimes, other.size);
+        this.ids = Arrays.copyOf(other.ids, other.size);
+        this.descriptions = Arrays.copyOf(other.descriptions, other.size);
+        this.size = other.size;
+        this.pool = other.pool.view();
+        this.preciseNanos = new HashMap<>(other.preciseNanos);
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        return materialize(index);
+    }
+
+    @Override
+    public int idAt(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void insert(int index, int id, Task task) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == types.length) {
+            grow();
+        }
+        int handle = pool.intern(task.getDescription());
+        if (index < size) {
+            shift(index, index + 1, size - index);
+        }
+
+        byte type = TYPE_TODO;
+        LocalDateTime first = null;
+        LocalDateTime second = null;
+        if (task instanceof Deadline d) {
+            type = TYPE_DEADLINE;
+            first = d.getBy();
+        } else if (task instanceof Event e) {
+            type = TYPE_EVENT;
+            first = e.getFromTime();
+            second = e.getToTime();
+        }
+        long firstNanos = first == null ? 0 : nanosOfMinute(first);
+        long secondNanos = second == null ? 0 : nanosOfMinute(second);
+        if (firstNanos != 0 || secondNanos != 0) {
+            type |= FLAG_PRECISE;
+            preciseNanos.put(id, new long[] {firstNanos, secondNanos});
+        }
+
+        types[index] = type;
+        done.set(index, task.isDone());
+        firstTimes[index] = first == null ? 0 : minutes(first);
+        secondTimes[index] = second == null ? 0 : minutes(second);
+        ids[index] = id;
+        descriptions[index] = handle;
+        size++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task t = get(index); // checks the index
+        compact(new int[] {index}, null);
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions in one pass over the columns from the first of them,
+     * reporting each to {@code removed} in list order.
+     *
+     * @param positions Positions in ascending order, without duplicates.
+     */
+    @Override
+    public void removeAll(int[] positions, Visitor removed) {
+        compact(positions, removed);
+    }
+
+    @Override
+    public Task getById(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index < 0 ? null : materialize(index);
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        Objects.checkIndex(index, size);
+        done.set(index, isDone);
+    }
+
+    @Override
+    public void forEachEntry(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(i, ids[i], materialize(i));
+        }
+    }
+
+    @Override
+    public void reset(List<Task> tasks) {
+        size = 0;
+        done.clear();
+        preciseNanos.clear();
+        pool = new DescriptionPool();
+        removedSincePacked = 0;
+        for (Task t : tasks) {
+            insert(size, size, t);
+        }
+    }
+
+    @Override
+    public void renumber() {
+        HashMap<Integer, long[]> renumbered = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if ((types[i] & FLAG_PRECISE) != 0) {
+                renumbered.put(i, preciseNanos.get(ids[i]));
+            }
+            ids[i] = i;
+        }
+        preciseNanos.clear();
+        preciseNanos.putAll(renumbered);
+    }
+
+    /**
+     * Returns a copy of the columns, O(n) array copies without a task object per task; its tasks are built
+     * as they are read, e.g. while being saved.
+     */
+    @Override
+    public List<Task> snapshot() {
+        return new ColumnarTaskStore(this);
+    }
+
+    // removed may be null when the caller does not need the removed tasks
+    private void compact(int[] positions, Visitor removed) {
+        if (positions.length == 0) {
+            return;
+        }
+        int write = positions[0];
+        int next = 0;
+        for (int read = positions[0]; read < size; read++) {
+            if (next < positions.length && positions[next] == read) {
+                next++;
+                if (removed != null) {
+                    removed.visit(read, ids[read], materialize(read));
+                }
+                if ((types[read] & FLAG_PRECISE) != 0) {
+                    preciseNanos.remove(ids[read]);
+                }
+            } else {
+                copy(read, write++);
+            }
+        }
+        done.clear(write, size);
+        size = write;
+        removedSincePacked += positions.length;
+        if (removedSincePacked > Math.max(size, 1024)) {
+            pack();
+        }
+    }
+
+    private Task materialize(int index) {
+        String description = pool.get(descriptions[index]);
+        byte type = types[index];
+        long[] nanos = (type & FLAG_PRECISE) != 0 ? preciseNanos.get(ids[index]) : null;
+        Task t;
+        switch (type & ~FLAG_PRECISE) {
+            case TYPE_DEADLINE:
+                t = new Deadline(description, time(firstTimes[index], nanos, 0));
+                break;
+            case TYPE_EVENT:
+                t = new Event(description, time(firstTimes[index], nanos, 0), time(secondTimes[index], nanos, 1));
+                break;
+            default:
+                t = new ToDo(description);
+                break;
+        }
+        if (done.get(index)) {
+            t.markAsDone();
+        }
+        return t;
+    }
+
+    // moves count tasks from position from to position to, from the far end first when moving up
+    private void shift(int from, int to, int count) {
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(firstTimes, from, firstTimes, to, count);
+        System.arraycopy(secondTimes, from, secondTimes, to, count);
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(descriptions, from, descriptions, to, count);
+        for (int i = count - 1; i >= 0; i--) {
+            done.set(to + i, done.get(from + i));
+        }
+    }
+
+    private void copy(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        types[to] = types[from];
+        done.set(to, done.get(from));
+        firstTimes[to] = firstTimes[from];
+        secondTimes[to] = secondTimes[from];
+        ids[to] = ids[from];
+        descriptions[to] = descriptions[from];
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) types.length + (types.length >> 1) + 1, Integer.MAX_VALUE - 8);
+        types = Arrays.copyOf(types, capacity);
+        firstTimes = Arrays.copyOf(firstTimes, capacity);
+        secondTimes = Arrays.copyOf(secondTimes, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    // copies the descriptions still in use into a new pool, dropping those of removed tasks
+    private void pack() {
+        DescriptionPool packed = new DescriptionPool();
+        for (int i = 0; i < size; i++) {
+            descriptions[i] = packed.intern(pool.get(descriptions[i]));
+        }
+        pool = packed;
+        removedSincePacked = 0;
+    }
+
+    private static long minutes(LocalDateTime dt) {
+        return Math.floorDiv(dt.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static long nanosOfMinute(LocalDateTime dt) {
+        return dt.getSecond() * NANOS_PER_SECOND + dt.getNano();
+    }
+
+    private static LocalDateTime time(long minutes, long[] nanos, int which) {
+        long extra = nanos == null ? 0 : nanos[which];
+        return LocalDateTime.ofEpochSecond(minutes * 60 + extra / NANOS_PER_SECOND,
+                (int) (extra % NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,47 @@
+package peggy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One command, as a JFR event spanning the whole command, with the time spent in each phase (see
+ * {@link Metrics}). Costs almost nothing unless a recording enables {@code peggy.Command}.
+ */
+@Name("peggy.Command")
+@Label("Command")
+@Category("Peggy")
+@Description("A command handled by Peggy, split into phases")
+@StackTrace(false)
+class CommandEvent extends Event {
+    @Label("Command")
+    private String command;
+
+    @Label("Parse")
+    @Timespan(Timespan.NANOSECONDS)
+    private long parse;
+
+    @Label("Execute")
+    @Timespan(Timespan.NANOSECONDS)
+    private long execute;
+
+    @Label("Persist")
+    @Timespan(Timespan.NANOSECONDS)
+    private long persist;
+
+    @Label("Render")
+    @Timespan(Timespan.NANOSECONDS)
+    private long render;
+
+    void set(CommandType type, long[] phaseNanos) {
+        command = type.name().toLowerCase();
+        parse = phaseNanos[Metrics.Phase.PARSE.ordinal()];
+        execute = phaseNanos[Metrics.Phase.EXECUTE.ordinal()];
+        persist = phaseNanos[Metrics.Phase.PERSIST.ordinal()];
+        render = phaseNanos[Metrics.Phase.RENDER.ordinal()];
+    }
+}
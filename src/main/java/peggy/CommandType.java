@@ -1,7 +1,8 @@
 package peggy;
 
 public enum CommandType {
-    BYE, LIST, MARK, UNMARK, DELETE, TODO, DEADLINE, EVENT, FIND, HELP, HELLO, UNKNOWN;
+    BYE, LIST, MORE, MARK, UNMARK, DELETE, TODO, DEADLINE, EVENT, FIND, SCHEDULE, BETWEEN, UPCOMING, OVERDUE, RUN,
+    STATS, HELP, HELLO, UNKNOWN;
 
     public static CommandType from(String word) {
         if (word == null) return UNKNOWN;
@@ -9,6 +10,7 @@ public enum CommandType {
         switch (word.toLowerCase()) {
             case "bye": return BYE;
             case "list": return LIST;
+            case "more": return MORE;
             case "mark": return MARK;
             case "unmark": return UNMARK;
             case "delete": return DELETE;
@@ -16,6 +18,12 @@ public enum CommandType {
             case "deadline": return DEADLINE;
             case "event": return EVENT;
             case "find": return FIND;
+            case "schedule": return SCHEDULE;
+            case "between": return BETWEEN;
+            case "upcoming": return UPCOMING;
+            case "overdue": return OVERDUE;
+            case "run": return RUN;
+            case "stats": return STATS;
             case "help": return HELP;
             case "hi":
             case "hello":
@@ -24,4 +32,26 @@ public enum CommandType {
                 return UNKNOWN;
         }
     }
+
+    /**
+     * Returns whether the command only reads the task list, so it may run alongside other queries.
+     */
+    public boolean isQuery() {
+        switch (this) {
+            case LIST:
+            case MORE:
+            case FIND:
+            case SCHEDULE:
+            case BETWEEN:
+            case UPCOMING:
+            case OVERDUE:
+            case STATS:
+            case HELP:
+            case HELLO:
+            case UNKNOWN:
+                return true;
+            default:
+                return false;
+        }
+    }
 }
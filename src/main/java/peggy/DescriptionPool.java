@@ -0,0 +1,152 @@
+package peggy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Task descriptions stored once each, back to back in one growing byte array, and referred to by an int
+ * handle: the offset of the entry, which is its UTF-8 length as a varint followed by the bytes.
+ * <p>
+ *     Adding a description that is already in the pool returns the existing handle, found through an
+ *     open-addressing table of handles, so repeated descriptions cost four bytes a task and no objects.
+ *     Entries are never changed or removed, only appended; {@link ColumnarTaskStore} copies the live ones
+ *     into a new pool once enough have gone out of use.
+ * </p>
+ */
+class DescriptionPool {
+    private static final int MAX_BYTES = Integer.MAX_VALUE - 8;
+
+    private byte[] bytes;
+    private int length;
+    private int[] table; // handle + 1 of an entry, or 0 for a free slot; null in a read-only view
+    private int entries;
+
+    DescriptionPool() {
+        this.bytes = new byte[1024];
+        this.table = new int[64];
+    }
+
+    private DescriptionPool(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * Returns the handle of the description, adding it if the pool does not have it yet.
+     *
+     * @throws IllegalStateException If the pool has reached its 2 GB limit.
+     */
+    int intern(String description) {
+        byte[] encoded = description.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(encoded, 0, encoded.length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int handle = table[slot] - 1;
+            if (matches(handle, encoded)) {
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int handle = append(encoded);
+        table[slot] = handle + 1;
+        if (++entries * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return handle;
+    }
+
+    String get(int handle) {
+        int len = lengthAt(handle);
+        return new String(bytes, handle + headerSize(len), len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes in use, including descriptions no longer referred to.
+     */
+    int byteSize() {
+        return length;
+    }
+
+    /**
+     * Returns a read-only pool of the entries added so far. Later additions go past them or into a new
+     * array, so the view can be read on another thread while this pool keeps growing.
+     */
+    DescriptionPool view() {
+        return new DescriptionPool(bytes, length);
+    }
+
+    private int append(byte[] encoded) {
+        int needed = 5 + encoded.length;
+        if (needed > MAX_BYTES - length) {
+            throw new IllegalStateException("Too much description text to keep in memory.");
+        }
+        if (length + needed > bytes.length) {
+            long grown = Math.max((long) bytes.length * 2, (long) length + needed);
+            bytes = Arrays.copyOf(bytes, (int) Math.min(grown, MAX_BYTES));
+        }
+        int handle = length;
+        int len = encoded.length;
+        while ((len & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((len & 0x7F) | 0x80);
+            len >>>= 7;
+        }
+        bytes[length++] = (byte) len;
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        return handle;
+    }
+
+    private boolean matches(int handle, byte[] encoded) {
+        int len = lengthAt(handle);
+        int pos = handle + headerSize(len);
+        return len == encoded.length && Arrays.equals(bytes, pos, pos + len, encoded, 0, len);
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry == 0) {
+                continue;
+            }
+            int len = lengthAt(entry - 1);
+            int pos = entry - 1 + headerSize(len);
+            int slot = hash(bytes, pos, pos + len) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry;
+        }
+    }
+
+    private int lengthAt(int handle) {
+        int len = 0;
+        int pos = handle;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[pos++];
+            len |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return len;
+            }
+        }
+    }
+
+    private static int headerSize(int len) {
+        int size = 1;
+        while ((len >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int hash(byte[] a, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + a[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
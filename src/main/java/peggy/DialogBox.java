@@ -1,62 +1,67 @@
 package peggy;
 
-import java.io.IOException;
-import java.util.Collections;
-
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 
+/**
+ * Chat bubble: a wrapped label next to a picture.
+ * <p>
+ *     Built directly in code rather than loaded from FXML, so making a bubble costs a few node allocations
+ *     instead of an XML parse and reflective injection.
+ * </p>
+ */
 public class DialogBox extends HBox {
+    private static final double SPACING = 12;
+    private static final double PICTURE_SIZE = 64;
+    private static final double MAX_TEXT_WIDTH = 320;
 
-    @FXML private Label dialog;
-    @FXML private ImageView displayPicture;
-
-    private DialogBox(String text, Image img) {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/DialogBox.fxml"));
-            loader.setRoot(this);
-            loader.setController(this);
-            loader.load();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private final Label dialog = new Label();
+    private final ImageView displayPicture = new ImageView();
 
-        dialog.setText(text);
+    DialogBox() {
+        super(SPACING);
+        setPadding(new Insets(8, 12, 8, 12));
 
         dialog.setWrapText(true);
-        dialog.setMaxWidth(320);
-
+        dialog.setMaxWidth(MAX_TEXT_WIDTH);
         dialog.getStyleClass().add("bubble");
 
-        displayPicture.setImage(img);
+        displayPicture.setFitWidth(PICTURE_SIZE);
+        displayPicture.setFitHeight(PICTURE_SIZE);
+        displayPicture.setPreserveRatio(true);
     }
 
-    private void flip() {
-        ObservableList<Node> nodes = FXCollections.observableArrayList(getChildren());
-        Collections.reverse(nodes);
-        getChildren().setAll(nodes);
-        setAlignment(Pos.TOP_LEFT);
+    /**
+     * Fills this box with a message: the user's on the right, Peggy's on the left with the picture first.
+     * A box can be refilled any number of times, which is how transcript cells reuse it.
+     */
+    void show(String text, Image img, boolean isUser) {
+        dialog.setText(text);
+        displayPicture.setImage(img);
+        dialog.getStyleClass().removeAll("user-bubble", "bot-bubble");
+        dialog.getStyleClass().add(isUser ? "user-bubble" : "bot-bubble");
+        if (isUser) {
+            getChildren().setAll(dialog, displayPicture);
+            setAlignment(Pos.TOP_RIGHT);
+        } else {
+            getChildren().setAll(displayPicture, dialog);
+            setAlignment(Pos.TOP_LEFT);
+        }
     }
 
     public static DialogBox getUserDialog(String text, Image img) {
-        DialogBox db = new DialogBox(text, img);
-        db.dialog.getStyleClass().add("user-bubble");
-        db.setAlignment(Pos.TOP_RIGHT);
+        DialogBox db = new DialogBox();
+        db.show(text, img, true);
         return db;
     }
 
     public static DialogBox getBotDialog(String text, Image img) {
-        DialogBox db = new DialogBox(text, img);
-        db.dialog.getStyleClass().add("bot-bubble");
-        db.flip();
+        DialogBox db = new DialogBox();
+        db.show(text, img, false);
         return db;
     }
 }
@@ -0,0 +1,86 @@
+package peggy;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+
+/**
+ * Undone deadlines and events ordered by when they are due: a deadline's {@code by}, an event's start.
+ * <p>
+ *     Backed by a red-black tree keyed on (due time, id), so adding, removing and re-adding a task as it is
+ *     marked and unmarked take O(log n), and the next k tasks after a given time take O(log n + k).
+ * </p>
+ */
+class DueQueue {
+    private final TreeSet<Entry> entries = new TreeSet<>(Entry.ORDER);
+
+    /**
+     * Queues the task if it is an undone deadline or event.
+     */
+    void add(int id, Task task) {
+        LocalDateTime due = dueTime(task);
+        if (due != null && !task.isDone()) {
+            entries.add(new Entry(due, id));
+        }
+    }
+
+    void remove(int id, Task task) {
+        LocalDateTime due = dueTime(task);
+        if (due != null) {
+            entries.remove(new Entry(due, id));
+        }
+    }
+
+    /**
+     * Returns the ids of up to {@code k} tasks due at or after {@code now}, soonest first.
+     */
+    int[] upcoming(LocalDateTime now, int k) {
+        return entries.tailSet(new Entry(now, Integer.MIN_VALUE), true).stream()
+                .limit(k)
+                .mapToInt(e -> e.id)
+                .toArray();
+    }
+
+    /**
+     * Returns the ids of the tasks due before {@code now}, longest overdue first.
+     */
+    int[] overdue(LocalDateTime now) {
+        return entries.headSet(new Entry(now, Integer.MIN_VALUE), false).stream()
+                .mapToInt(e -> e.id)
+                .toArray();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns when the task is due, or null if it has no time.
+     */
+    static LocalDateTime dueTime(Task task) {
+        if (task instanceof Deadline d) {
+            return d.getBy();
+        }
+        if (task instanceof Event e) {
+            return e.getFromTime();
+        }
+        return null;
+    }
+
+    private static class Entry {
+        static final Comparator<Entry> ORDER = Comparator.<Entry, LocalDateTime>comparing(e -> e.due)
+                .thenComparingInt(e -> e.id);
+
+        private final LocalDateTime due;
+        private final int id;
+
+        Entry(LocalDateTime due, int id) {
+            this.due = due;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package peggy;
+
+/**
+ * Decides how often journaled changes are forced to disk by the {@link PersistenceWriter}.
+ * <p>
+ *     Changes are always written in the background; the policy only controls when they are fsynced:
+ *     after every command (the command waits for it), every N milliseconds, or only on exit.
+ * </p>
+ */
+public class DurabilityPolicy {
+    /** Policy used when none is configured. */
+    public static final DurabilityPolicy DEFAULT = everyMillis(100);
+
+    private final boolean isEveryCommand;
+    private final long intervalMillis;
+
+    private DurabilityPolicy(boolean isEveryCommand, long intervalMillis) {
+        this.isEveryCommand = isEveryCommand;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Returns a policy that forces every change to disk before the command returns.
+     */
+    public static DurabilityPolicy everyCommand() {
+        return new DurabilityPolicy(true, 0);
+    }
+
+    /**
+     * Returns a policy that forces pending changes to disk at most every {@code millis} milliseconds.
+     */
+    public static DurabilityPolicy everyMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive.");
+        }
+        return new DurabilityPolicy(false, millis);
+    }
+
+    /**
+     * Returns a policy that only forces changes to disk on {@code bye} or shutdown.
+     */
+    public static DurabilityPolicy onExit() {
+        return new DurabilityPolicy(false, 0);
+    }
+
+    /**
+     * Parses a policy name: {@code command}, {@code exit}, or an interval such as {@code 200ms}.
+     *
+     * @param raw Policy name; null or blank gives {@link #DEFAULT}.
+     * @return The parsed policy.
+     */
+    public static DurabilityPolicy parse(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return DEFAULT;
+        }
+        String s = raw.trim().toLowerCase();
+        if (s.equals("command")) {
+            return everyCommand();
+        }
+        if (s.equals("exit")) {
+            return onExit();
+        }
+        try {
+            return everyMillis(Long.parseLong(s.endsWith("ms") ? s.substring(0, s.length() - 2) : s));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown durability policy: " + raw
+                    + " (use command, exit or e.g. 200ms)");
+        }
+    }
+
+    public boolean isEveryCommand() {
+        return isEveryCommand;
+    }
+
+    public boolean isOnExit() {
+        return !isEveryCommand && intervalMillis == 0;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+}
@@ -0,0 +1,433 @@
+package peggy;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Serves one {@link Peggy} as a JSON API over HTTP on the loopback interface.
+ * <ul>
+ *     <li>{@code GET /tasks?page=1&size=50}: {@code {"total":n,"tasks":[...]}}, every task when no page
+ *     is given.</li>
+ *     <li>{@code GET /tasks/search?q=book&fuzzy=true}: {@code {"tasks":[...]}}, as {@code find} or
+ *     {@code find ~} would list them.</li>
+ *     <li>{@code POST /tasks} with form fields {@code type} (todo, deadline or event),
+ *     {@code description}, and {@code by} or {@code from} and {@code to} written as in the chat: the added
+ *     task, with status 201. Fields holding {@code |} or control characters such as line breaks get 400.</li>
+ *     <li>{@code POST /tasks/{selection}/mark}, {@code POST /tasks/{selection}/unmark} and
+ *     {@code DELETE /tasks/{selection}}, where the selection is written as after {@code mark}, e.g.
+ *     {@code 3}, {@code 1-5,8} or {@code done}: {@code {"count":n,"tasks":[...]}}.</li>
+ * </ul>
+ * <p>
+ *     A task is {@code {"index":i,"type":"todo","description":"...","done":false}}, with {@code by},
+ *     {@code from} and {@code to} as ISO date-times for deadlines and events; search results have no index.
+ *     Errors are {@code {"error":"..."}} with status 400, 404 or 405. Connections are kept alive, and
+ *     requests are served concurrently under the same locks as the chat commands.
+ * </p>
+ */
+public class HttpApi implements Closeable {
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String TASKS = "/tasks";
+    private static final String SEARCH = "/tasks/search";
+    private static final int MAX_FORM_BYTES = 64 * 1024;
+
+    static {
+        // the JDK server writes headers and body separately; with Nagle's algorithm on, every small
+        // response then waits out the client's delayed ACK (about 40 ms). Read once, before the first server.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Peggy peggy;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param peggy Peggy to serve.
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public HttpApi(Peggy peggy, int port) throws IOException {
+        this.peggy = peggy;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "peggy-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(workers);
+        server.createContext(TASKS, this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the port the API listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving, letting requests in progress finish for up to a second. Does not close Peggy.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                Map<String, String> params = readParams(exchange);
+                route(exchange, exchange.getRequestMethod(), exchange.getRequestURI().getPath(), params);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, String path, Map<String, String> params)
+            throws IOException {
+        if (path.equals(TASKS) || path.equals(TASKS + "/")) {
+            if (method.equals("GET")) {
+                listTasks(exchange, params);
+            } else if (method.equals("POST")) {
+                addTask(exchange, params);
+            } else {
+                sendError(exchange, 405, "Use GET or POST on " + TASKS + ".");
+            }
+            return;
+        }
+        if (path.equals(SEARCH)) {
+            if (method.equals("GET")) {
+                search(exchange, params);
+            } else {
+                sendError(exchange, 405, "Use GET on " + SEARCH + ".");
+            }
+            return;
+        }
+
+        // /tasks/{selection}[/mark|/unmark]
+        String[] parts = path.substring(TASKS.length() + 1).split("/", -1);
+        String selection = parts[0];
+        String action = parts.length == 2 ? parts[1] : null;
+        if (selection.isEmpty() || parts.length > 2) {
+            sendError(exchange, 404, "No such resource: " + path);
+        } else if (action == null) {
+            if (method.equals("DELETE")) {
+                List<Task> removed = new ArrayList<>();
+                int[] indexes = peggy.delete(selection, removed);
+                sendChanged(exchange, indexes, removed);
+            } else {
+                sendError(exchange, 405, "Use DELETE on " + path + ".");
+            }
+        } else if (action.equals("mark") || action.equals("unmark")) {
+            if (method.equals("POST")) {
+                List<Task> changed = new ArrayList<>();
+                int[] indexes = peggy.mark(selection, action.equals("mark"), changed);
+                sendChanged(exchange, indexes, changed);
+            } else {
+                sendError(exchange, 405, "Use POST on " + path + ".");
+            }
+        } else {
+            sendError(exchange, 404, "No such resource: " + path);
+        }
+    }
+
+    private void listTasks(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int start = 0;
+        int count = Integer.MAX_VALUE;
+        if (params.containsKey("page") || params.containsKey("size")) {
+            int page = parsePositive(params.getOrDefault("page", "1"), "page");
+            count = parsePositive(params.getOrDefault("size", "50"), "size");
+            start = (int) Math.min((long) (page - 1) * count, Integer.MAX_VALUE);
+        }
+        List<Task> shown = new ArrayList<>();
+        int total = peggy.copyTasks(start, count, shown);
+
+        // written after the lock is released, so a slow client never holds up other requests
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("total").value(total).name("tasks").beginArray();
+        for (int i = 0; i < shown.size(); i++) {
+            writeTask(json, start + i, shown.get(i));
+        }
+        json.endArray().endObject().close();
+    }
+
+    private void search(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String query = params.get("q");
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Please give a search query, e.g. /tasks/search?q=book");
+        }
+        List<Task> matches = new ArrayList<>();
+        peggy.search(query.trim(), Boolean.parseBoolean(params.get("fuzzy")), matches);
+
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("tasks").beginArray();
+        for (Task t : matches) {
+            writeTask(json, -1, t);
+        }
+        json.endArray().endObject().close();
+    }
+
+    private void addTask(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Task t = toTask(params);
+        int total = peggy.add(t);
+        JsonWriter json = beginJson(exchange, 201);
+        writeTask(json, total - 1, t);
+        json.close();
+    }
+
+    // built from the separate fields, with the chat commands' checks and error messages; the fields are never
+    // pasted into a command, where " /by " in a description would be read as a flag
+    private static Task toTask(Map<String, String> params) {
+        String type = params.getOrDefault("type", "todo");
+        String desc = field(params, "description");
+        switch (type) {
+            case "todo":
+                if (desc.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The description of a todo cannot be empty.");
+                }
+                return new ToDo(desc);
+            case "deadline": {
+                String by = field(params, "by");
+                if (desc.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The description of a deadline cannot be empty.");
+                }
+                if (by.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The date/time of a deadline cannot be empty.");
+                }
+                return new Deadline(desc, Parser.parseDateTime(by));
+            }
+            case "event": {
+                String from = field(params, "from");
+                String to = field(params, "to");
+                if (desc.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The description of an event cannot be empty.");
+                }
+                if (from.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The 'from time' of an event cannot be empty.");
+                }
+                if (to.isEmpty()) {
+                    throw new IllegalArgumentException("OOPS!!! The 'to time' of an event cannot be empty.");
+                }
+                LocalDateTime start = Parser.parseDateTime(from);
+                LocalDateTime end = Parser.parseDateTime(to);
+                if (start.isAfter(end)) {
+                    throw new IllegalArgumentException("Event time invalid: /from must be earlier than /to.");
+                }
+                return new Event(desc, start, end);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown task type: " + type + " (use todo, deadline or event)");
+        }
+    }
+
+    /**
+     * Returns a form field, trimmed, or "" if absent.
+     *
+     * @throws IllegalArgumentException If it holds a control character or {@code |}, which would break the
+     *     line-based save file and journal (a line break could even add a journal record of its own).
+     */
+    private static String field(Map<String, String> params, String name) {
+        String value = params.getOrDefault(name, "");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '|' || Character.isISOControl(c)) {
+                throw new IllegalArgumentException("The " + name + " cannot contain '|', line breaks or other "
+                        + "control characters.");
+            }
+        }
+        return value.trim();
+    }
+
+    private static void sendChanged(HttpExchange exchange, int[] indexes, List<Task> tasks) throws IOException {
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("count").value(tasks.size()).name("tasks").beginArray();
+        for (int i = 0; i < tasks.size(); i++) {
+            writeTask(json, indexes[i], tasks.get(i));
+        }
+        json.endArray().endObject().close();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonWriter json = beginJson(exchange, status);
+        json.beginObject().name("error").value(message).endObject().close();
+    }
+
+    private static JsonWriter beginJson(HttpExchange exchange, int status) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new ResponseBody(exchange, status),
+                StandardCharsets.UTF_8));
+        return new JsonWriter(out);
+    }
+
+    /**
+     * Writes one task; {@code index} is its 0-based position, shown 1-based, or -1 for none.
+     */
+    private static void writeTask(JsonWriter json, int index, Task t) throws IOException {
+        json.beginObject();
+        if (index >= 0) {
+            json.name("index").value(index + 1);
+        }
+        if (t instanceof Deadline) {
+            json.name("type").value("deadline");
+        } else if (t instanceof Event) {
+            json.name("type").value("event");
+        } else {
+            json.name("type").value("todo");
+        }
+        json.name("description").value(t.getDescription()).name("done").value(t.isDone());
+        if (t instanceof Deadline) {
+            json.name("by").value(isoOf(((Deadline) t).getBy()));
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            json.name("from").value(isoOf(e.getFromTime())).name("to").value(isoOf(e.getToTime()));
+        }
+        json.endObject();
+    }
+
+    private static String isoOf(LocalDateTime time) {
+        return time == null ? null : time.toString();
+    }
+
+    private static int parsePositive(String raw, String name) {
+        try {
+            int n = Integer.parseInt(raw.trim());
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Please give a positive whole number for " + name + ".");
+    }
+
+    /**
+     * Returns the query parameters merged with a form body, which takes precedence. The body is always
+     * read to the end, so the connection can be reused for the next request.
+     *
+     * @throws IllegalArgumentException If the body is too large or not properly encoded.
+     */
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_FORM_BYTES);
+            if (in.transferTo(OutputStream.nullOutputStream()) > 0) {
+                throw new IllegalArgumentException("Please keep requests under " + MAX_FORM_BYTES / 1024 + " KB.");
+            }
+            if (body.length > 0) {
+                parseForm(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> into) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            if (!key.isEmpty()) {
+                into.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * A response body sent with its length when it fits in {@link #BUFFERED_BYTES}, in one write, and
+     * streamed in chunks once it outgrows that, so a long listing is never held in memory as a whole.
+     */
+    private static class ResponseBody extends OutputStream {
+        private static final int BUFFERED_BYTES = 16 * 1024;
+
+        private final HttpExchange exchange;
+        private final int status;
+        private byte[] buffer = new byte[BUFFERED_BYTES];
+        private int count;
+        private OutputStream chunked;
+
+        ResponseBody(HttpExchange exchange, int status) {
+            this.exchange = exchange;
+            this.status = status;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (chunked == null && count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+                return;
+            }
+            if (chunked == null) {
+                exchange.sendResponseHeaders(status, 0);
+                chunked = exchange.getResponseBody();
+                chunked.write(buffer, 0, count);
+                buffer = null;
+            }
+            chunked.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (chunked != null) {
+                chunked.close();
+                return;
+            }
+            if (buffer == null) {
+                return; // already sent
+            }
+            exchange.sendResponseHeaders(status, count);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(buffer, 0, count);
+            }
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package peggy;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints kept in ascending order by its users.
+ * <p>
+ *     Used for task ids and index postings, where boxing every entry would cost far more memory
+ *     than the data itself.
+ * </p>
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Appends a value; callers append in ascending order so the list stays sorted.
+     */
+    void add(int value) {
+        assert size == 0 || values[size - 1] < value : "IntList values must be added in ascending order";
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Replaces the value at the index; the caller keeps the list ascending.
+     */
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the position of the value, or a negative number if absent (as in {@link Arrays#binarySearch}).
+     */
+    int indexOf(int value) {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
+    /**
+     * Returns the position of the first value {@code >= value} at or after {@code from}, or {@link #size()}.
+     */
+    int lowerBound(int value, int from) {
+        int i = Arrays.binarySearch(values, from, size, value);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Removes the value if present.
+     *
+     * @return Whether the value was present.
+     */
+    boolean remove(int value) {
+        int i = indexOf(value);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+}
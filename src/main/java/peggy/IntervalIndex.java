@@ -0,0 +1,189 @@
+package peggy;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+
+/**
+ * Interval tree over the times of events (their from-to range) and deadlines (their due time as a point).
+ * <p>
+ *     Implemented as a treap ordered by (start, id), where every node also knows the latest end in its
+ *     subtree. An overlap query skips every subtree that ends before the range or starts after it, so
+ *     its cost follows the number of tasks reported rather than the size of the list. Times are kept as
+ *     epoch seconds; callers re-check reported tasks against the exact range.
+ * </p>
+ */
+class IntervalIndex {
+    /**
+     * Receives the ids of reported intervals, in order of start time.
+     */
+    interface Visitor {
+        void visit(int id);
+    }
+
+    private final Random random = new Random();
+    private Node root;
+    private int size;
+
+    /**
+     * Indexes the task if it is a deadline or event.
+     */
+    void add(int id, Task task) {
+        if (task instanceof Deadline d) {
+            long at = seconds(d.getBy());
+            root = insert(root, new Node(at, at, id, random.nextInt()));
+            size++;
+        } else if (task instanceof Event e) {
+            root = insert(root, new Node(seconds(e.getFromTime()), seconds(e.getToTime()), id, random.nextInt()));
+            size++;
+        }
+    }
+
+    void remove(int id, Task task) {
+        long start;
+        if (task instanceof Deadline d) {
+            start = seconds(d.getBy());
+        } else if (task instanceof Event e) {
+            start = seconds(e.getFromTime());
+        } else {
+            return;
+        }
+        root = delete(root, start, id);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Visits every interval overlapping [from, to] (inclusive), in order of start time.
+     */
+    void overlapping(LocalDateTime from, LocalDateTime to, Visitor visitor) {
+        // floor both ends: reports a superset of the exact overlaps
+        overlapping(root, seconds(from), seconds(to), visitor);
+    }
+
+    private static void overlapping(Node node, long from, long to, Visitor visitor) {
+        while (node != null && node.maxEnd >= from) {
+            overlapping(node.left, from, to, visitor);
+            if (node.start > to) {
+                return; // everything to the right starts later still
+            }
+            if (node.end >= from) {
+                visitor.visit(node.id);
+            }
+            node = node.right;
+        }
+    }
+
+    private static long seconds(LocalDateTime dt) {
+        return dt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.isBefore(node.start, node.id)) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+        if (node.start == start && node.id == id) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (start < node.start || (start == node.start && id < node.id)) {
+            node.left = delete(node.left, start, id);
+        } else {
+            node.right = delete(node.right, start, id);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node top = node.left;
+        node.left = top.right;
+        top.right = node;
+        node.update();
+        top.update();
+        return top;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node top = node.right;
+        node.right = top.left;
+        top.left = node;
+        node.update();
+        top.update();
+        return top;
+    }
+
+    private static class Node {
+        private final long start;
+        private final long end;
+        private final int id;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        Node(long start, long end, int id, int priority) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        boolean isBefore(long otherStart, int otherId) {
+            return start < otherStart || (start == otherStart && id < otherId);
+        }
+
+        void update() {
+            maxEnd = end;
+            if (left != null && left.maxEnd > maxEnd) {
+                maxEnd = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > maxEnd) {
+                maxEnd = right.maxEnd;
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import peggy.task.Task;
+
+/**
+ * Append-only log of task list mutations, stored next to the snapshot file.
+ * <p>
+ *     Each mutation is one line, so recording a command costs O(1) regardless of list size:
+ *     A | T | 0 | read book      (add, followed by the task in snapshot format)
+ *     M | 3                      (mark the task at 0-based index 3 as done)
+ *     U | 3                      (mark the task at 0-based index 3 as not done)
+ *     X | 3                      (delete the task at 0-based index 3)
+ *     M, U and X may also list several indexes and ranges, e.g. X | 2,6,8-19 deletes all of those in one
+ *     pass; indexes refer to positions before the record is applied.
+ *     The first line records which snapshot generation the log applies to.
+ * </p>
+ */
+class Journal {
+    private static final String BASE_PREFIX = "# base ";
+
+    private final Path path;
+    private FileChannel channel;
+    private boolean needsReset; // the file's header does not match the loaded snapshot; see replay
+
+    /**
+     * Creates a journal backed by the given file.
+     *
+     * @param path Path of the journal file.
+     */
+    Journal(Path path) {
+        this.path = path;
+    }
+
+    static String addRecord(Task task) {
+        return "A | " + Storage.format(task);
+    }
+
+    static String markRecord(int index, boolean isDone) {
+        return (isDone ? "M | " : "U | ") + index;
+    }
+
+    static String deleteRecord(int index) {
+        return "X | " + index;
+    }
+
+    static String markRecord(int[] indexes, boolean isDone) {
+        return (isDone ? "M | " : "U | ") + formatIndexes(indexes);
+    }
+
+    static String deleteRecord(int[] indexes) {
+        return "X | " + formatIndexes(indexes);
+    }
+
+    // ascending indexes as a comma-separated list, with runs written as from-to
+    private static String formatIndexes(int[] indexes) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < indexes.length; i++) {
+            int runStart = i;
+            while (i + 1 < indexes.length && indexes[i + 1] == indexes[i] + 1) {
+                i++;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(indexes[runStart]);
+            if (i > runStart) {
+                sb.append('-').append(indexes[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the size of the journal file in bytes, or 0 if it does not exist or is stale.
+     */
+    long size() throws IOException {
+        if (channel != null) {
+            return channel.size();
+        }
+        return Files.exists(path) && !needsReset ? Files.size(path) : 0;
+    }
+
+    /**
+     * Appends records to the end of the journal, creating it for the given generation if needed.
+     * <p>
+     *     The records reach the OS in one write, but are only durable after {@link #force()}. A journal that
+     *     {@link #replay(List, long)} found stale is started afresh rather than appended to, as records after
+     *     a stale header would be ignored on the next load.
+     * </p>
+     *
+     * @param records Records to append, one per line.
+     * @param generation Snapshot generation the journal applies to.
+     * @return Number of bytes written, including a header if the journal had to be started.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    long append(List<String> records, long generation) throws IOException {
+        long header = 0;
+        if (channel == null) {
+            if (Files.exists(path) && !needsReset) {
+                channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } else {
+                header = reset(generation);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        return header + write(sb.toString());
+    }
+
+    /**
+     * Discards all records and starts an empty journal for the given generation.
+     *
+     * @param generation Snapshot generation the new journal applies to.
+     * @return Number of bytes written.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    long reset(long generation) throws IOException {
+        close();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        needsReset = false;
+        return write(BASE_PREFIX + generation + "\n");
+    }
+
+    /**
+     * Cuts the journal back to an earlier size; at 0 the file is removed, so the next append starts it with
+     * a header.
+     *
+     * @param size A size the journal had earlier, from {@link #size()}.
+     * @throws IOException If an I/O error occurs while truncating.
+     */
+    void truncate(long size) throws IOException {
+        if (size == 0) {
+            close();
+            Files.deleteIfExists(path);
+            return;
+        }
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        if (channel.size() > size) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     */
+    void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Closes the underlying file; a later append reopens it.
+     */
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private int write(String s) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        return buf.capacity();
+    }
+
+    /**
+     * Replays the journal on top of tasks loaded from the snapshot of the given generation.
+     * <p>
+     *     A journal written for a different generation has already been folded into the snapshot
+     *     (e.g. the app stopped between writing the snapshot and resetting the journal), so it is ignored.
+     *     Malformed records and a torn last line are skipped. Records are streamed, not read into memory.
+     *     A stale journal, or one without a header, is remembered so that the next append starts it afresh.
+     * </p>
+     *
+     * @param tasks Tasks loaded from the snapshot; modified in place.
+     * @param generation Generation of the loaded snapshot.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    void replay(List<Task> tasks, long generation) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        byte[] header = (BASE_PREFIX + generation).getBytes(StandardCharsets.UTF_8);
+        TaskFileReader reader = new TaskFileReader();
+        int[] lineNo = {0};
+        boolean[] isStale = {false};
+        TaskFileReader.forEachLine(path, false, (buf, start, end) -> {
+            if (isStale[0] || start == end) {
+                return;
+            }
+            if (lineNo[0]++ == 0) {
+                isStale[0] = !Arrays.equals(buf, start, end, header, 0, header.length);
+                return;
+            }
+            apply(tasks, reader, buf, start, end);
+        });
+        needsReset = isStale[0] || lineNo[0] == 0;
+    }
+
+    private static void apply(List<Task> tasks, TaskFileReader reader, byte[] b, int start, int end) {
+        if (end - start < 4 || b[start + 1] != ' ' || b[start + 2] != '|' || b[start + 3] != ' ') {
+            return; // skip malformed
+        }
+
+        if (b[start] == 'A') {
+            try {
+                Task t = reader.parse(b, start + 4, end);
+                if (t != null) {
+                    tasks.add(t);
+                }
+            } catch (IllegalArgumentException e) {
+                // skip records with unparseable dates
+            }
+            return;
+        }
+
+        int[] ranges = parseRanges(b, start + 4, end, tasks.size());
+        if (ranges == null) {
+            return;
+        }
+
+        switch (b[start]) {
+            case 'M':
+            case 'U':
+                for (int r = 0; r < ranges.length; r += 2) {
+                    for (int idx = ranges[r]; idx <= ranges[r + 1]; idx++) {
+                        if (tasks instanceof TaskStore store) {
+                            store.setDone(idx, b[start] == 'M'); // without reading a lazily loaded task
+                        } else if (b[start] == 'M') {
+                            tasks.get(idx).markAsDone();
+                        } else {
+                            tasks.get(idx).markAsNotDone();
+                        }
+                    }
+                }
+                break;
+            case 'X':
+                removeRanges(tasks, ranges);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Parses {@code 3} or {@code 2,6,8-19} into inclusive from/to pairs.
+     *
+     * @return The pairs, or null if the list is malformed, not ascending or reaches past {@code size}.
+     */
+    private static int[] parseRanges(byte[] b, int start, int end, int size) {
+        int[] ranges = new int[8];
+        int count = 0;
+        int value = -1;
+        int last = -1;
+        boolean isRangeEnd = false;
+        for (int i = start; i <= end; i++) {
+            byte c = i == end ? (byte) ',' : b[i];
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    return null;
+                }
+                value = (value < 0 ? 0 : value * 10) + digit;
+            } else if (value < 0) {
+                return null;
+            } else if (c == '-' && !isRangeEnd) {
+                if (value <= last) {
+                    return null;
+                }
+                if (count == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, count * 2);
+                }
+                ranges[count++] = value;
+                last = value;
+                value = -1;
+                isRangeEnd = true;
+            } else if (c == ',') {
+                if (value < last || (value == last && !isRangeEnd) || value >= size) {
+                    return null;
+                }
+                if (count + 2 > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                }
+                if (!isRangeEnd) {
+                    ranges[count++] = value;
+                }
+                ranges[count++] = value;
+                last = value;
+                value = -1;
+                isRangeEnd = false;
+            } else {
+                return null;
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    // deletes every task in the ranges in one pass over the list; a store does so without reading them
+    private static void removeRanges(List<Task> tasks, int[] ranges) {
+        if (tasks instanceof TaskStore store) {
+            store.removeAll(positions(ranges), null);
+            return;
+        }
+        int write = ranges[0];
+        int r = 0;
+        for (int read = ranges[0]; read < tasks.size(); read++) {
+            while (r < ranges.length && read > ranges[r + 1]) {
+                r += 2;
+            }
+            if (r < ranges.length && read >= ranges[r]) {
+                continue;
+            }
+            tasks.set(write++, tasks.get(read));
+        }
+        tasks.subList(write, tasks.size()).clear();
+    }
+
+    private static int[] positions(int[] ranges) {
+        int count = 0;
+        for (int r = 0; r < ranges.length; r += 2) {
+            count += ranges[r + 1] - ranges[r] + 1;
+        }
+        int[] positions = new int[count];
+        int n = 0;
+        for (int r = 0; r < ranges.length; r += 2) {
+            for (int idx = ranges[r]; idx <= ranges[r + 1]; idx++) {
+                positions[n++] = idx;
+            }
+        }
+        return positions;
+    }
+}
@@ -1,7 +1,137 @@
 package peggy;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class Launcher {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--convert")) {
+            convert(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(batch(args));
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--http")) {
+            serveHttp(args);
+            return;
+        }
         MainApp.launch(MainApp.class, args);
     }
+
+    // --convert <from> <to> <text|binary>
+    private static void convert(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: --convert <from> <to> <text|binary>");
+            System.exit(2);
+        }
+        try {
+            Storage.Format format = Storage.Format.valueOf(args[3].toUpperCase());
+            int count = Storage.convert(args[1], args[2], format);
+            System.out.println("Converted " + count + " tasks to " + args[3].toLowerCase() + ": " + args[2]);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown format: " + args[3] + " (use text or binary)");
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Could not convert " + args[1] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // --batch [--strict] [file]; reads the script from standard input when no file is given
+    private static int batch(String[] args) {
+        boolean isStrict = args.length > 1 && args[1].equals("--strict");
+        int fileArg = isStrict ? 2 : 1;
+        if (args.length > fileArg + 1) {
+            System.err.println("Usage: --batch [--strict] [file]");
+            return 2;
+        }
+        String name = args.length > fileArg ? args[fileArg] : "standard input";
+        Peggy peggy = new Peggy(MainApp.SAVE_PATH);
+        try (BufferedReader script = args.length > fileArg
+                ? Files.newBufferedReader(Path.of(name), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            boolean isKept = peggy.runScript(script, name, isStrict, System.out);
+            System.out.println();
+            return isKept ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Could not read " + name + ": " + e.getMessage());
+            return 1;
+        } finally {
+            peggy.close();
+        }
+    }
+
+    // --server [port]; runs until the process is stopped
+    private static void serve(String[] args) {
+        int port = Server.DEFAULT_PORT;
+        try {
+            if (args.length > 1) {
+                port = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: --server [port]");
+            System.exit(2);
+        }
+        Peggy peggy = new Peggy(MainApp.SAVE_PATH);
+        Server server;
+        try {
+            server = new Server(peggy, port);
+        } catch (IOException e) {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            peggy.close();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // stopping anyway
+            }
+            peggy.close();
+        }));
+        System.out.println("Peggy is listening on localhost:" + server.getPort() + ". Press Ctrl+C to stop.");
+        try {
+            server.awaitClose();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --http [port]; runs until the process is stopped
+    private static void serveHttp(String[] args) {
+        int port = HttpApi.DEFAULT_PORT;
+        try {
+            if (args.length > 1) {
+                port = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: --http [port]");
+            System.exit(2);
+        }
+        Peggy peggy = new Peggy(MainApp.SAVE_PATH);
+        HttpApi api;
+        try {
+            api = new HttpApi(peggy, port);
+        } catch (IOException e) {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            peggy.close();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.close();
+            peggy.close();
+        }));
+        System.out.println("Peggy's API is at http://localhost:" + api.getPort() + "/tasks. Press Ctrl+C to stop.");
+    }
 }
@@ -0,0 +1,309 @@
+package peggy;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+
+/**
+ * Tasks loaded from a text save file without parsing them: one scan notes where each task's line starts,
+ * its type and whether it is done, and a task is parsed from its line the first time it is read. The scan
+ * skips the lines a full load skips, including those whose dates do not parse. Sessions
+ * that only touch a few tasks never parse the rest, so starting up costs a read and a scan of the file.
+ * <p>
+ *     A parsed task is kept and shared like in {@link TaskTree}, so later reads and marks see the same
+ *     object. Marks of tasks not parsed yet only change their done bit; so does finding the tasks by status,
+ *     and building the date indexes skips to-dos without parsing them. Tasks added later are held as objects.
+ *     Inserting or removing shifts the columns after the position, as in {@link ColumnarTaskStore}.
+ * </p>
+ * <p>
+ *     Queries may read tasks from several threads at once, so the parsed tasks are cached in an
+ *     {@link AtomicReferenceArray}: a task is only seen once fully made, and when two threads parse the
+ *     same line, both get the one cached first. Changes hold the write lock and see the cache as it is.
+ * </p>
+ */
+class LazyTaskStore extends AbstractList<Task> implements TaskStore {
+    private final byte[] text; // the save file; never changed
+    private int[] lineStarts; // offset of each task's line in text, or -1 once the task is an object
+    private AtomicReferenceArray<Task> parsed; // the task object, or null if not parsed yet
+    private byte[] types; // 'T', 'D' or 'E'
+    private final BitSet done; // only for tasks not parsed yet
+    private int[] ids;
+    private int size;
+
+    /**
+     * Creates a store of the given tasks, numbered from 0 upwards.
+     */
+    LazyTaskStore(List<Task> tasks) {
+        this(new byte[0], new int[0], new byte[0], new BitSet(), 0);
+        reset(tasks);
+    }
+
+    /**
+     * Creates a store of tasks not parsed yet, numbered from 0 upwards in list order.
+     *
+     * @param text The save file's content.
+     * @param lineStarts Where each task's line starts in {@code text}.
+     * @param types The type letter of each task.
+     * @param done Which tasks are done.
+     * @param size Number of tasks.
+     */
+    LazyTaskStore(byte[] text, int[] lineStarts, byte[] types, BitSet done, int size) {
+        int capacity = Math.max(size, 16);
+        this.text = text;
+        this.lineStarts = Arrays.copyOf(lineStarts, capacity);
+        this.types = Arrays.copyOf(types, capacity);
+        this.parsed = new AtomicReferenceArray<>(capacity);
+        this.done = done;
+        this.ids = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        this.size = size;
+    }
+
+    // copies another store, sharing its text; parsed tasks are copied so later marks do not reach them
+    private LazyTaskStore(LazyTaskStore other) {
+        this.text = other.text;
+        this.lineStarts = Arrays.copyOf(other.lineStarts, other.size);
+        this.types = Arrays.copyOf(other.types, other.size);
+        this.parsed = new AtomicReferenceArray<>(other.size);
+        for (int i = 0; i < other.size; i++) {
+            Task t = other.parsed.get(i);
+            parsed.set(i, t == null ? null : t.copy());
+        }
+        this.done = (BitSet) other.done.clone();
+        this.ids = Arrays.copyOf(other.ids, other.size);
+        this.size = other.size;
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        return task(index);
+    }
+
+    @Override
+    public int idAt(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a task, e.g. one added by a journal record while loading, with the next id.
+     *
+     * @throws UnsupportedOperationException If the index is not {@code size()}; ids must stay in list order.
+     */
+    @Override
+    public void add(int index, Task task) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Tasks can only be appended while loading.");
+        }
+        insert(size, size == 0 ? 0 : ids[size - 1] + 1, task);
+    }
+
+    @Override
+    public void insert(int index, int id, Task task) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == ids.length) {
+            int capacity = (int) Math.min((long) size + (size >> 1) + 1, Integer.MAX_VALUE - 8);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            parsed = copyOf(parsed, size, capacity);
+            types = Arrays.copyOf(types, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        if (index < size) {
+            System.arraycopy(lineStarts, index, lineStarts, index + 1, size - index);
+            System.arraycopy(types, index, types, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            for (int i = size; i > index; i--) {
+                parsed.set(i, parsed.get(i - 1));
+                done.set(i, done.get(i - 1));
+            }
+        }
+        lineStarts[index] = -1;
+        parsed.set(index, task);
+        types[index] = 0; // only read for tasks not parsed yet
+        done.clear(index);
+        ids[index] = id;
+        size++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task t = get(index); // checks the index
+        compact(new int[] {index}, null);
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions in one pass over the columns from the first of them,
+     * reporting each to {@code removed} in list order.
+     *
+     * @param positions Positions in ascending order, without duplicates.
+     */
+    @Override
+    public void removeAll(int[] positions, Visitor removed) {
+        compact(positions, removed);
+    }
+
+    @Override
+    public Task getById(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index < 0 ? null : task(index);
+    }
+
+    /**
+     * Marks the task, only flipping its done bit if it has not been parsed yet.
+     */
+    @Override
+    public void setDone(int index, boolean isDone) {
+        Objects.checkIndex(index, size);
+        Task t = parsed.get(index);
+        if (t == null) {
+            done.set(index, isDone);
+        } else if (isDone) {
+            t.markAsDone();
+        } else {
+            t.markAsNotDone();
+        }
+    }
+
+    @Override
+    public void forEachEntry(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(i, ids[i], task(i));
+        }
+    }
+
+    /**
+     * Visits the deadlines and events, parsing only those; to-dos are told apart by their type letter.
+     */
+    @Override
+    public void forEachDated(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            Task t = parsed.get(i);
+            if (t == null && types[i] == 'T') {
+                continue;
+            }
+            t = task(i);
+            if (t instanceof Deadline || t instanceof Event) {
+                visitor.visit(i, ids[i], t);
+            }
+        }
+    }
+
+    @Override
+    public int[] indexesWithStatus(boolean isDone) {
+        int[] found = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Task t = parsed.get(i);
+            if ((t == null ? done.get(i) : t.isDone()) == isDone) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    @Override
+    public void reset(List<Task> tasks) {
+        size = 0;
+        done.clear();
+        parsed = new AtomicReferenceArray<>(parsed.length());
+        for (Task t : tasks) {
+            insert(size, size, t);
+        }
+    }
+
+    @Override
+    public void renumber() {
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+    }
+
+    /**
+     * Returns a copy of the columns that shares the file's text; only tasks already parsed are copied.
+     */
+    @Override
+    public List<Task> snapshot() {
+        return new LazyTaskStore(this);
+    }
+
+    private Task task(int index) {
+        Task t = parsed.get(index);
+        if (t == null) {
+            t = parse(index);
+            if (!parsed.compareAndSet(index, null, t)) {
+                t = parsed.get(index); // another reader cached it first
+            }
+        }
+        return t;
+    }
+
+    private Task parse(int index) {
+        int start = lineStarts[index];
+        int end = start;
+        while (end < text.length && text[end] != '\n' && text[end] != '\r') {
+            end++;
+        }
+        Task t = new TaskFileReader().parse(text, start, end); // the scan kept only lines that parse
+        if (done.get(index)) {
+            t.markAsDone();
+        } else {
+            t.markAsNotDone();
+        }
+        return t;
+    }
+
+    private static AtomicReferenceArray<Task> copyOf(AtomicReferenceArray<Task> tasks, int size, int capacity) {
+        AtomicReferenceArray<Task> copy = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < size; i++) {
+            copy.set(i, tasks.get(i));
+        }
+        return copy;
+    }
+
+    // removed may be null when the caller does not need the removed tasks
+    private void compact(int[] positions, Visitor removed) {
+        if (positions.length == 0) {
+            return;
+        }
+        int write = positions[0];
+        int next = 0;
+        for (int read = positions[0]; read < size; read++) {
+            if (next < positions.length && positions[next] == read) {
+                next++;
+                if (removed != null) {
+                    removed.visit(read, ids[read], task(read));
+                }
+                continue;
+            }
+            lineStarts[write] = lineStarts[read];
+            parsed.set(write, parsed.get(read));
+            types[write] = types[read];
+            done.set(write, done.get(read));
+            ids[write] = ids[read];
+            write++;
+        }
+        for (int i = write; i < size; i++) {
+            parsed.set(i, null);
+        }
+        done.clear(write, size);
+        size = write;
+    }
+}
@@ -7,15 +7,30 @@ import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 
 public class MainApp extends Application {
-    private static final String SAVE_PATH = "data/peggy.txt";
+    static final String SAVE_PATH = "data/peggy.txt";
+
+    private Peggy peggy;
+    private MainWindow controller;
 
     @Override
     public void start(Stage stage) throws Exception {
         FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/view/MainWindow.fxml"));
         AnchorPane root = loader.load();
 
-        MainWindow controller = loader.getController();
-        controller.setPeggy(new Peggy(SAVE_PATH));
+        controller = loader.getController();
+        // e.g. --durability=command, --durability=exit or --durability=200ms
+        DurabilityPolicy policy = DurabilityPolicy.parse(getParameters().getNamed().get("durability"));
+        // e.g. --store=columnar holds the tasks as columns of primitives, for millions of tasks, and
+        // --store=mapped keeps them in a memory-mapped file, for more than fit in the heap; --store=lazy
+        // starts quickly on a large save file by parsing each task only when it is first read
+        TaskList.Backend backend = TaskList.Backend.parse(getParameters().getNamed().get("store"));
+        peggy = new Peggy(SAVE_PATH, policy, backend);
+        controller.setPeggy(peggy);
+        // e.g. --history=500 keeps the last 500 messages on screen; --history=0 keeps all
+        String history = getParameters().getNamed().get("history");
+        if (history != null) {
+            controller.setHistoryLimit(Integer.parseInt(history));
+        }
 
         Scene scene = new Scene(root);
 
@@ -27,4 +42,14 @@ public class MainApp extends Application {
         stage.setScene(scene);
         stage.show();
     }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown(); // let commands already sent finish first
+        }
+        if (peggy != null) {
+            peggy.close();
+        }
+    }
 }
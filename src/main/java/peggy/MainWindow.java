@@ -4,69 +4,150 @@ import javafx.fxml.FXML;
 import javafx.application.Platform;
 import javafx.animation.PauseTransition;
 import javafx.util.Duration;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
-import javafx.scene.layout.VBox;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MainWindow {
+    private static final int GUI_CHUNK_CHARS = 8192;
+    private static final int DEFAULT_HISTORY_LIMIT = 1000;
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
 
-    @FXML private ScrollPane scrollPane;
-    @FXML private VBox dialogContainer;
+    @FXML private ListView<Message> transcript;
     @FXML private TextField userInput;
     @FXML private Button sendButton;
+    @FXML private ProgressIndicator pendingIndicator;
 
     private Peggy peggy;
+    private final ObservableList<Message> messages = FXCollections.observableArrayList();
+    private int historyLimit = DEFAULT_HISTORY_LIMIT;
+    private int pending; // commands sent but not yet answered
+
+    // one thread keeps commands in order and off the FX thread
+    private final ExecutorService commands = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "peggy-commands");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final Image userImg = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/images/user.png")));
     private final Image botImg  = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/images/bot.png")));
 
     @FXML
     public void initialize() {
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
+        // only the visible messages get cells, and cells are reused as the transcript scrolls
+        transcript.setItems(messages);
+        transcript.setCellFactory(view -> new MessageCell(userImg, botImg));
+        transcript.setFocusTraversable(false);
     }
 
     public void setPeggy(Peggy peggy) {
         this.peggy = peggy;
-        dialogContainer.getChildren().add(
-                DialogBox.getBotDialog(cleanForGui(peggy.getWelcomeMessage()), botImg)
-        );
+        addBotDialog(peggy.getWelcomeMessage());
+    }
+
+    /**
+     * Sets how many messages the transcript keeps; older ones are dropped. 0 keeps all of them.
+     */
+    public void setHistoryLimit(int historyLimit) {
+        this.historyLimit = historyLimit;
+        trimHistory();
+    }
+
+    /**
+     * Stops taking commands and waits briefly for the ones already sent to finish, so they reach
+     * Peggy before it is closed.
+     */
+    public void shutdown() {
+        commands.shutdown();
+        try {
+            commands.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @FXML
     private void handleUserInput() {
         String input = userInput.getText();
+        userInput.clear();
 
         // if blank, show Peggy error without creating an empty user bubble
-        if (input == null || input.trim().isBlank()) {
-            dialogContainer.getChildren().add(
-                    DialogBox.getBotDialog(cleanForGui(peggy.getResponse(input)), botImg)
-            );
-            userInput.clear();
-            return;
+        boolean isBlank = input == null || input.trim().isBlank();
+        if (!isBlank) {
+            addMessage(new Message(Message.Sender.USER, input));
         }
 
-        // user bubble
-        dialogContainer.getChildren().add(DialogBox.getUserDialog(input, userImg));
-
-        String response = cleanForGui(peggy.getResponse(input));
-        dialogContainer.getChildren().add(DialogBox.getBotDialog(response, botImg));
-
+        // stop taking input now; the window closes once bye has been handled
         boolean isBye = peggy.isExitCommand(input);
-        userInput.clear();
-
         if (isBye) {
             userInput.setDisable(true);
             sendButton.setDisable(true);
+        }
+
+        setPending(pending + 1);
+        commands.execute(() -> run(input, isBye));
+    }
+
+    // on the command thread: Peggy only ever runs here, one command at a time, in the order sent
+    private void run(String input, boolean isBye) {
+        // long listings arrive in several chunks, each in its own bubble
+        ChunkedSink sink = new ChunkedSink(GUI_CHUNK_CHARS, chunk -> Platform.runLater(() -> addBotDialog(chunk)));
+        try {
+            peggy.respond(input, sink);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ChunkedSink does not throw
+        } catch (RuntimeException e) {
+            sink.append("\nSomething went wrong: ").append(String.valueOf(e.getMessage()));
+        } finally {
+            sink.flush();
+            Platform.runLater(() -> finish(isBye));
+        }
+    }
+
+    private void finish(boolean isBye) {
+        setPending(pending - 1);
+        if (isBye) {
             PauseTransition delay = new PauseTransition(Duration.millis(600));
             delay.setOnFinished(e -> Platform.exit());
             delay.play();
         }
     }
 
+    private void setPending(int pending) {
+        this.pending = pending;
+        pendingIndicator.setVisible(pending > 0);
+    }
+
+    private void addBotDialog(String text) {
+        String cleaned = cleanForGui(text);
+        if (!cleaned.isEmpty()) {
+            addMessage(new Message(Message.Sender.BOT, cleaned));
+        }
+    }
+
+    private void addMessage(Message message) {
+        messages.add(message);
+        trimHistory();
+        transcript.scrollTo(messages.size() - 1);
+    }
+
+    private void trimHistory() {
+        if (historyLimit > 0 && messages.size() > historyLimit) {
+            messages.remove(0, messages.size() - historyLimit);
+        }
+    }
+
     private static String cleanForGui(String s) {
         if (s == null) return "";
         return s.replaceAll("(?m)^-+\\s*$\\R?", "").trim();
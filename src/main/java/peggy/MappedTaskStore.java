@@ -0,0 +1,626 @@
+package peggy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Tasks kept in a memory-mapped file of fixed-size records rather than on the heap, for lists larger than
+ * the heap. Opening the file only maps it; a task is read from its record when asked for, and marking one
+ * sets a bit in the mapping. The heap holds a buffer per 4 MB of file, whatever the number of tasks.
+ * <p>
+ *     The file starts with a 64-byte header (magic {@code 89 50 47 4D}, version, task count, overflow
+ *     length, and at 24 a flag set while the text save file holds the same tasks; see {@link #isSaved()}),
+ *     followed by one 64-byte record per task in list order:
+ * </p>
+ * <pre>
+ *     0  flags: bits 0-1 type T/D/E, bit 2 done
+ *     1  length of the description if it is stored inline, or 255 if it is in the overflow file
+ *     4  id
+ *     8  due time of deadlines, start of events, in epoch seconds; 16 end of events
+ *     24 nanos of the due or start time; 28 nanos of the end time
+ *     32 the description, up to 32 bytes of UTF-8; longer ones as its offset (8 bytes) and length (4)
+ *        in the overflow file {@code <file>.overflow}
+ * </pre>
+ * <p>
+ *     Both files grow a 4 MB mapping at a time. Appending writes the record past the end before counting it.
+ *     Removing, inserting before the end and resetting move the records from the first changed position
+ *     on, so they are first written to a side file {@code <file>.tail}, which is forced and then copied
+ *     into place; opening the file finishes a complete side file left by a crash and drops a torn one, so
+ *     the records are always either as before or as after the change. The overflow file only grows: text
+ *     of removed tasks stays until the file is rewritten. Changes reach the file as the OS writes the
+ *     mapping back, or at once on {@link #force()}.
+ * </p>
+ */
+class MappedTaskStore extends AbstractList<Task> implements TaskStore, Closeable {
+    static final byte VERSION = 1;
+
+    private static final byte[] MAGIC = {(byte) 0x89, 'P', 'G', 'M'};
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int OVERFLOW_LENGTH_OFFSET = 16;
+    private static final int SAVED_OFFSET = 24;
+    private static final int RECORD_SIZE = 64;
+    private static final int CHUNK_SIZE = 4 << 20;
+    private static final int RECORDS_PER_CHUNK = CHUNK_SIZE / RECORD_SIZE;
+
+    private static final int FLAGS = 0;
+    private static final int INLINE_LENGTH = 1;
+    private static final int ID = 4;
+    private static final int FIRST_SECONDS = 8;
+    private static final int SECOND_SECONDS = 16;
+    private static final int FIRST_NANOS = 24;
+    private static final int SECOND_NANOS = 28;
+    private static final int DESCRIPTION = 32;
+    private static final int INLINE_MAX = RECORD_SIZE - DESCRIPTION;
+    private static final int IN_OVERFLOW = 0xFF;
+
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int FLAG_DONE = 1 << 2;
+
+    // side file: first position and new count, the records from that position on, then TAIL_END
+    private static final int TAIL_HEADER_SIZE = 8;
+    private static final long TAIL_END = 0x504547475441494CL; // "PEGGTAIL"
+    private static final int TAIL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Puts the record for the next position of a rewritten tail into a buffer.
+     */
+    private interface RecordSource {
+        void next(ByteBuffer into, int at);
+    }
+
+    private final Path path;
+    private final boolean isReadOnly;
+    private final FileChannel records;
+    private final FileChannel overflow;
+    private final MappedByteBuffer header;
+    private final ArrayList<MappedByteBuffer> recordChunks = new ArrayList<>();
+    private final ArrayList<MappedByteBuffer> overflowChunks = new ArrayList<>();
+    private final byte[] scratch = new byte[RECORD_SIZE]; // for rewriting records; only used under a change
+    private int size;
+    private long overflowLength;
+
+    private MappedTaskStore(Path path, boolean isReadOnly) throws IOException {
+        this.path = path;
+        this.isReadOnly = isReadOnly;
+        boolean isNew = !Files.exists(path);
+        StandardOpenOption[] options = isReadOnly
+                ? new StandardOpenOption[] {StandardOpenOption.READ}
+                : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE};
+        FileChannel.MapMode mode = isReadOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        this.records = FileChannel.open(path, options);
+        try {
+            this.overflow = FileChannel.open(overflowPath(path), options);
+        } catch (IOException e) {
+            records.close();
+            throw e;
+        }
+        try {
+            if (isNew || records.size() == 0) {
+                header = records.map(mode, 0, HEADER_SIZE);
+                header.put(0, MAGIC);
+                header.put(MAGIC.length, VERSION);
+            } else {
+                if (records.size() < HEADER_SIZE) {
+                    throw new IOException("Truncated task file: " + path);
+                }
+                header = records.map(mode, 0, HEADER_SIZE);
+                byte[] magic = new byte[MAGIC.length];
+                header.get(0, magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Not a mapped task file: " + path);
+                }
+                if (header.get(MAGIC.length) != VERSION) {
+                    throw new IOException("Unsupported task file version " + header.get(MAGIC.length) + " in " + path);
+                }
+                size = header.getInt(COUNT_OFFSET);
+                overflowLength = header.getLong(OVERFLOW_LENGTH_OFFSET);
+                if (size < 0 || overflowLength < 0 || records.size() < HEADER_SIZE + (long) size * RECORD_SIZE) {
+                    throw new IOException("Corrupt task file: " + path);
+                }
+            }
+            while ((long) recordChunks.size() * RECORDS_PER_CHUNK < Math.max(size, 1)) {
+                recordChunks.add(map(records, HEADER_SIZE + (long) recordChunks.size() * CHUNK_SIZE));
+            }
+            while ((long) overflowChunks.size() * CHUNK_SIZE < overflowLength) {
+                overflowChunks.add(map(overflow, (long) overflowChunks.size() * CHUNK_SIZE));
+            }
+            if (!isReadOnly) {
+                finishTail();
+            }
+        } catch (IOException | RuntimeException e) {
+            records.close();
+            overflow.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the task file at the path, creating an empty one if there is none. Nothing is read until a task
+     * is asked for.
+     *
+     * @throws IOException If the file cannot be mapped or is not a task file.
+     */
+    static MappedTaskStore open(Path path) throws IOException {
+        return new MappedTaskStore(path, false);
+    }
+
+    static Path overflowPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".overflow");
+    }
+
+    static Path tailPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tail");
+    }
+
+    /**
+     * Returns whether the text save file was last written from this file and holds the same tasks, so it
+     * can be loaded instead; cleared, and forced to disk, before the first change to a task after that.
+     */
+    boolean isSaved() {
+        return header.get(SAVED_OFFSET) != 0;
+    }
+
+    /**
+     * Records whether the text save file holds the same tasks as this file, forcing the header to disk.
+     */
+    void setSaved(boolean isSaved) {
+        header.put(SAVED_OFFSET, (byte) (isSaved ? 1 : 0));
+        header.force();
+    }
+
+    // ids are not part of the save file, so renumbering does not count as a change
+    private void beginChange() {
+        if (isSaved()) {
+            setSaved(false);
+        }
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        return materialize(index);
+    }
+
+    @Override
+    public int idAt(int index) {
+        Objects.checkIndex(index, size);
+        return chunk(index).getInt(offset(index) + ID);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends by writing the record past the end and then counting it; inserting before the end rewrites
+     * the records from the position on through the side file.
+     */
+    @Override
+    public void insert(int index, int id, Task task) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        beginChange();
+        if (size == (long) recordChunks.size() * RECORDS_PER_CHUNK) {
+            mapRecordChunk();
+        }
+        encode(task, id, chunk(size), offset(size));
+        if (index == size) {
+            setSize(size + 1);
+            return;
+        }
+        int staged = size;
+        int[] read = {-1}; // the staged record first, then those from index on
+        rewriteTail(index, size + 1, (into, at) -> {
+            int from = read[0] < 0 ? staged : read[0];
+            read[0] = read[0] < 0 ? index : read[0] + 1;
+            copyRecord(from, into, at);
+        });
+    }
+
+    // writes a task's record at the offset, appending a long description to the overflow file
+    private void encode(Task task, int id, ByteBuffer chunk, int at) {
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        long overflowOffset = description.length > INLINE_MAX ? appendOverflow(description) : -1;
+        int flags = TYPE_TODO;
+        LocalDateTime first = null;
+        LocalDateTime second = null;
+        if (task instanceof Deadline d) {
+            flags = TYPE_DEADLINE;
+            first = d.getBy();
+        } else if (task instanceof Event e) {
+            flags = TYPE_EVENT;
+            first = e.getFromTime();
+            second = e.getToTime();
+        }
+        if (task.isDone()) {
+            flags |= FLAG_DONE;
+        }
+
+        chunk.put(at + FLAGS, (byte) flags);
+        chunk.putInt(at + ID, id);
+        chunk.putLong(at + FIRST_SECONDS, first == null ? 0 : first.toEpochSecond(ZoneOffset.UTC));
+        chunk.putLong(at + SECOND_SECONDS, second == null ? 0 : second.toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(at + FIRST_NANOS, first == null ? 0 : first.getNano());
+        chunk.putInt(at + SECOND_NANOS, second == null ? 0 : second.getNano());
+        if (overflowOffset < 0) {
+            chunk.put(at + INLINE_LENGTH, (byte) description.length);
+            chunk.put(at + DESCRIPTION, description);
+        } else {
+            chunk.put(at + INLINE_LENGTH, (byte) IN_OVERFLOW);
+            chunk.putLong(at + DESCRIPTION, overflowOffset);
+            chunk.putInt(at + DESCRIPTION + 8, description.length);
+        }
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task t = get(index); // checks the index
+        compact(new int[] {index}, null);
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions in one pass over the records from the first of them,
+     * reporting each to {@code removed} in list order.
+     *
+     * @param positions Positions in ascending order, without duplicates.
+     */
+    @Override
+    public void removeAll(int[] positions, Visitor removed) {
+        compact(positions, removed);
+    }
+
+    @Override
+    public Task getById(int id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = chunk(mid).getInt(offset(mid) + ID);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return materialize(mid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the done bit of the task's record in the mapping.
+     */
+    @Override
+    public void setDone(int index, boolean isDone) {
+        Objects.checkIndex(index, size);
+        beginChange();
+        MappedByteBuffer chunk = chunk(index);
+        int at = offset(index) + FLAGS;
+        byte flags = chunk.get(at);
+        chunk.put(at, (byte) (isDone ? flags | FLAG_DONE : flags & ~FLAG_DONE));
+    }
+
+    @Override
+    public void forEachEntry(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(i, chunk(i).getInt(offset(i) + ID), materialize(i));
+        }
+    }
+
+    /**
+     * Replaces the tasks through the side file, so a crash keeps either all old or all new tasks. The
+     * overflow file is only reused when the store is empty.
+     */
+    @Override
+    public void reset(List<Task> tasks) {
+        beginChange();
+        if (size == 0) {
+            overflowLength = 0;
+            header.putLong(OVERFLOW_LENGTH_OFFSET, 0);
+        }
+        Iterator<Task> it = tasks.iterator();
+        int[] id = {0};
+        rewriteTail(0, tasks.size(), (into, at) -> encode(it.next(), id[0]++, into, at));
+    }
+
+    @Override
+    public void renumber() {
+        for (int i = 0; i < size; i++) {
+            chunk(i).putInt(offset(i) + ID, i);
+        }
+    }
+
+    /**
+     * Returns a read-only store over copies of the files as they are now, so no task is read onto the heap.
+     * The copies are deleted once mapped where the OS allows it, else when the JVM exits.
+     */
+    @Override
+    public List<Task> snapshot() {
+        try {
+            Path copy = Files.createTempFile(path.getFileName().toString(), ".snapshot");
+            Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(overflowPath(path), overflowPath(copy), StandardCopyOption.REPLACE_EXISTING);
+            MappedTaskStore snapshot = new MappedTaskStore(copy, true);
+            for (Path p : List.of(copy, overflowPath(copy))) {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    p.toFile().deleteOnExit();
+                }
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes changes in the mapping through to the disk.
+     *
+     * @throws IOException If the files cannot be forced.
+     */
+    void force() throws IOException {
+        if (isReadOnly) {
+            return;
+        }
+        header.force();
+        for (MappedByteBuffer chunk : recordChunks) {
+            chunk.force();
+        }
+        for (MappedByteBuffer chunk : overflowChunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Forces changes to disk and closes the files. The mapping itself is released by the garbage collector,
+     * as the JDK offers no way to unmap a buffer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            records.close();
+            overflow.close();
+        }
+    }
+
+    // removed may be null when the caller does not need the removed tasks
+    private void compact(int[] positions, Visitor removed) {
+        if (positions.length == 0) {
+            return;
+        }
+        beginChange();
+        if (removed != null) {
+            for (int p : positions) {
+                removed.visit(p, chunk(p).getInt(offset(p) + ID), materialize(p));
+            }
+        }
+        int[] read = {positions[0]};
+        int[] next = {0};
+        rewriteTail(positions[0], size - positions.length, (into, at) -> {
+            while (next[0] < positions.length && positions[next[0]] == read[0]) {
+                next[0]++;
+                read[0]++;
+            }
+            copyRecord(read[0]++, into, at);
+        });
+    }
+
+    /**
+     * Replaces the records from position {@code from} on, making the count {@code newSize}: writes the new
+     * records to the side file and forces it, copies them into place, forces the mapping and deletes the
+     * side file.
+     */
+    private void rewriteTail(int from, int newSize, RecordSource source) {
+        Path tail = tailPath(path);
+        try (FileChannel out = FileChannel.open(tail, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(TAIL_BUFFER_SIZE);
+            buf.putInt(from).putInt(newSize);
+            for (int i = from; i < newSize; i++) {
+                if (buf.remaining() < RECORD_SIZE) {
+                    writeFully(out, buf);
+                }
+                Arrays.fill(scratch, (byte) 0);
+                source.next(ByteBuffer.wrap(scratch), 0);
+                buf.put(scratch);
+            }
+            if (buf.remaining() < Long.BYTES) {
+                writeFully(out, buf);
+            }
+            buf.putLong(TAIL_END);
+            writeFully(out, buf);
+            out.force(true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write " + tail + ": " + e.getMessage(), e);
+        }
+        try {
+            finishTail();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not apply " + tail + ": " + e.getMessage(), e);
+        }
+    }
+
+    // copies a complete side file into place; drops one that a crash left torn, as nothing was moved yet
+    private void finishTail() throws IOException {
+        Path tail = tailPath(path);
+        if (!Files.exists(tail)) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(tail, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(TAIL_HEADER_SIZE);
+            ByteBuffer end = ByteBuffer.allocate(Long.BYTES);
+            long length = in.size();
+            boolean isComplete = length >= TAIL_HEADER_SIZE + Long.BYTES
+                    && in.read(head, 0) == TAIL_HEADER_SIZE
+                    && in.read(end, length - Long.BYTES) == Long.BYTES
+                    && end.getLong(0) == TAIL_END;
+            int from = head.getInt(0);
+            int newSize = head.getInt(4);
+            if (isComplete && from >= 0 && newSize >= from
+                    && length == TAIL_HEADER_SIZE + (long) (newSize - from) * RECORD_SIZE + Long.BYTES) {
+                while ((long) recordChunks.size() * RECORDS_PER_CHUNK < newSize) {
+                    mapRecordChunk();
+                }
+                ByteBuffer buf = ByteBuffer.allocate(TAIL_BUFFER_SIZE - TAIL_BUFFER_SIZE % RECORD_SIZE);
+                long pos = TAIL_HEADER_SIZE;
+                int i = from;
+                while (i < newSize) {
+                    buf.clear();
+                    buf.limit((int) Math.min(buf.capacity(), (long) (newSize - i) * RECORD_SIZE));
+                    while (buf.hasRemaining()) {
+                        if (in.read(buf, pos + buf.position()) < 0) {
+                            throw new IOException("Truncated " + tail);
+                        }
+                    }
+                    pos += buf.limit();
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        buf.get(scratch);
+                        chunk(i).put(offset(i), scratch);
+                        i++;
+                    }
+                }
+                setSize(newSize);
+                force();
+            }
+        }
+        Files.delete(tail);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    private Task materialize(int index) {
+        MappedByteBuffer chunk = chunk(index);
+        int at = offset(index);
+        int flags = chunk.get(at + FLAGS);
+        String description = description(chunk, at);
+        Task t;
+        switch (flags & 3) {
+            case TYPE_DEADLINE:
+                t = new Deadline(description, time(chunk, at + FIRST_SECONDS, at + FIRST_NANOS));
+                break;
+            case TYPE_EVENT:
+                t = new Event(description, time(chunk, at + FIRST_SECONDS, at + FIRST_NANOS),
+                        time(chunk, at + SECOND_SECONDS, at + SECOND_NANOS));
+                break;
+            default:
+                t = new ToDo(description);
+                break;
+        }
+        if ((flags & FLAG_DONE) != 0) {
+            t.markAsDone();
+        }
+        return t;
+    }
+
+    private String description(MappedByteBuffer chunk, int at) {
+        int inlineLength = chunk.get(at + INLINE_LENGTH) & 0xFF;
+        byte[] bytes;
+        if (inlineLength != IN_OVERFLOW) {
+            bytes = new byte[inlineLength];
+            chunk.get(at + DESCRIPTION, bytes);
+        } else {
+            long offset = chunk.getLong(at + DESCRIPTION);
+            bytes = new byte[chunk.getInt(at + DESCRIPTION + 8)];
+            overflowChunks.get((int) (offset / CHUNK_SIZE)).get((int) (offset % CHUNK_SIZE), bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime time(ByteBuffer chunk, int secondsAt, int nanosAt) {
+        return LocalDateTime.ofEpochSecond(chunk.getLong(secondsAt), chunk.getInt(nanosAt), ZoneOffset.UTC);
+    }
+
+    // descriptions never straddle two chunks, so each can be read from one buffer
+    private long appendOverflow(byte[] description) {
+        if (description.length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Description is too long to store.");
+        }
+        long offset = overflowLength;
+        if (offset % CHUNK_SIZE + description.length > CHUNK_SIZE) {
+            offset = (offset / CHUNK_SIZE + 1) * CHUNK_SIZE;
+        }
+        while ((long) overflowChunks.size() * CHUNK_SIZE < offset + description.length) {
+            try {
+                overflowChunks.add(map(overflow, (long) overflowChunks.size() * CHUNK_SIZE));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not grow " + overflowPath(path) + ": " + e.getMessage(), e);
+            }
+        }
+        overflowChunks.get((int) (offset / CHUNK_SIZE)).put((int) (offset % CHUNK_SIZE), description);
+        overflowLength = offset + description.length;
+        header.putLong(OVERFLOW_LENGTH_OFFSET, overflowLength);
+        return offset;
+    }
+
+    private void mapRecordChunk() {
+        try {
+            recordChunks.add(map(records, HEADER_SIZE + (long) recordChunks.size() * CHUNK_SIZE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // a whole chunk, growing the file if need be; read-only files cannot grow, so only what is there
+    private MappedByteBuffer map(FileChannel channel, long position) throws IOException {
+        if (isReadOnly) {
+            long available = Math.max(channel.size() - position, 0);
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(available, CHUNK_SIZE));
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE);
+    }
+
+    private void copyRecord(int index, ByteBuffer into, int at) {
+        into.put(at, chunk(index), offset(index), RECORD_SIZE);
+    }
+
+    private void setSize(int newSize) {
+        size = newSize;
+        header.putInt(COUNT_OFFSET, newSize);
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        return recordChunks.get(index / RECORDS_PER_CHUNK);
+    }
+
+    private static int offset(int index) {
+        return (index % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+}
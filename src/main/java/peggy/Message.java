@@ -0,0 +1,33 @@
+package peggy;
+
+/**
+ * One bubble of the chat transcript.
+ */
+public class Message {
+    /**
+     * Who a message is from.
+     */
+    public enum Sender {
+        USER, BOT
+    }
+
+    private final Sender sender;
+    private final String text;
+
+    public Message(Sender sender, String text) {
+        this.sender = sender;
+        this.text = text;
+    }
+
+    public Sender getSender() {
+        return sender;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isFromUser() {
+        return sender == Sender.USER;
+    }
+}
@@ -0,0 +1,39 @@
+package peggy;
+
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.Image;
+
+/**
+ * List cell that shows a {@link Message} as a dialog bubble.
+ * <p>
+ *     The list view only creates as many cells as fit on screen and reuses them while scrolling, so each
+ *     cell keeps one {@link DialogBox} and just refills it with the message it is given.
+ * </p>
+ */
+public class MessageCell extends ListCell<Message> {
+    private final DialogBox box = new DialogBox();
+    private final Image userImg;
+    private final Image botImg;
+
+    /**
+     * Creates a cell showing user messages with {@code userImg} and Peggy's with {@code botImg}.
+     */
+    public MessageCell(Image userImg, Image botImg) {
+        this.userImg = userImg;
+        this.botImg = botImg;
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        setPrefWidth(0); // follow the list's width instead of the bubble's, so there is no horizontal scroll
+    }
+
+    @Override
+    protected void updateItem(Message message, boolean isEmpty) {
+        super.updateItem(message, isEmpty);
+        if (isEmpty || message == null) {
+            setGraphic(null);
+            return;
+        }
+        box.show(message.getText(), message.isFromUser() ? userImg : botImg, message.isFromUser());
+        setGraphic(box);
+    }
+}
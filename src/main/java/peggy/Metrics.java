@@ -0,0 +1,157 @@
+package peggy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Where Peggy's time goes: a {@link LatencyHistogram} per {@link CommandType} for whole commands and for
+ * each {@link Phase}, and a count of changes that could not be saved. Every command is also committed as
+ * a {@link CommandEvent}, so JFR recordings line it up with GC and I/O.
+ * <p>
+ *     A command is timed on its own thread: {@link #begin()} starts the clock, each {@link #lap(Phase)}
+ *     charges the time since the previous lap to a phase, and {@link #end(CommandType)} charges the rest to
+ *     {@link Phase#RENDER} and records it. Commands run inside another (a script's lines) count towards the
+ *     outer one.
+ * </p>
+ */
+class Metrics {
+    /**
+     * Parts of a command. Execute includes waiting for the lock.
+     */
+    enum Phase {
+        PARSE, EXECUTE, PERSIST, RENDER
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    // [command type][0 for the whole command, else phase + 1]
+    private final LatencyHistogram[][] histograms = new LatencyHistogram[CommandType.values().length][];
+    private final ThreadLocal<Timer> timers = ThreadLocal.withInitial(Timer::new);
+    private final AtomicLong unsavedCommands = new AtomicLong();
+    private final AtomicReference<String> lastSaveError = new AtomicReference<>();
+
+    Metrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram[PHASES.length + 1];
+            for (int j = 0; j < histograms[i].length; j++) {
+                histograms[i][j] = new LatencyHistogram();
+            }
+        }
+    }
+
+    void begin() {
+        Timer timer = timers.get();
+        if (timer.depth++ > 0) {
+            return;
+        }
+        Arrays.fill(timer.phaseNanos, 0);
+        timer.event = new CommandEvent();
+        timer.event.begin();
+        timer.start = System.nanoTime();
+        timer.last = timer.start;
+    }
+
+    /**
+     * Charges the time since the previous lap to the given phase.
+     */
+    void lap(Phase phase) {
+        Timer timer = timers.get();
+        if (timer.depth == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        timer.phaseNanos[phase.ordinal()] += now - timer.last;
+        timer.last = now;
+    }
+
+    void end(CommandType type) {
+        Timer timer = timers.get();
+        if (timer.depth == 0) {
+            return;
+        }
+        lap(Phase.RENDER);
+        if (--timer.depth > 0) {
+            return;
+        }
+        LatencyHistogram[] forType = histograms[type.ordinal()];
+        forType[0].record(timer.last - timer.start);
+        for (Phase phase : PHASES) {
+            forType[phase.ordinal() + 1].record(timer.phaseNanos[phase.ordinal()]);
+        }
+        CommandEvent event = timer.event;
+        timer.event = null;
+        if (event.shouldCommit()) {
+            event.set(type, timer.phaseNanos);
+            event.commit();
+        }
+    }
+
+    /**
+     * Counts a change that could not be handed to the persistence thread or made durable.
+     */
+    void saveFailed(Exception e) {
+        unsavedCommands.incrementAndGet();
+        lastSaveError.set(e.getMessage());
+    }
+
+    long getUnsavedCommands() {
+        return unsavedCommands.get();
+    }
+
+    String getLastSaveError() {
+        return lastSaveError.get();
+    }
+
+    /**
+     * Returns the histogram of whole commands of the given type, or of one phase of them.
+     *
+     * @param phase The phase, or null for whole commands.
+     */
+    LatencyHistogram histogram(CommandType type, Phase phase) {
+        return histograms[type.ordinal()][phase == null ? 0 : phase.ordinal() + 1];
+    }
+
+    /**
+     * Formats a duration with three significant figures, e.g. {@code 850 ns}, {@code 12.3 us} or
+     * {@code 4.56 ms}.
+     */
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        String[] units = {"us", "ms", "s"};
+        double value = nanos / 1_000.0;
+        int unit = 0;
+        while (value >= 1_000 && unit < units.length - 1) {
+            value /= 1_000;
+            unit++;
+        }
+        return String.format(value >= 100 ? "%.0f %s" : value >= 10 ? "%.1f %s" : "%.2f %s", value, units[unit]);
+    }
+
+    /**
+     * Formats a byte count, e.g. {@code 512 B}, {@code 12.3 KB} or {@code 4.56 MB}.
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes / 1024.0;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(value >= 100 ? "%.0f %s" : value >= 10 ? "%.1f %s" : "%.2f %s", value, units[unit]);
+    }
+
+    private static class Timer {
+        private final long[] phaseNanos = new long[PHASES.length];
+        private int depth;
+        private long start;
+        private long last;
+        private CommandEvent event;
+    }
+}
@@ -0,0 +1,174 @@
+package peggy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import peggy.task.Task;
+
+/**
+ * Loads large text save files on the common {@link ForkJoinPool}.
+ * <p>
+ *     The file is cut into chunks of about {@value #CHUNK_SIZE} bytes, each ending on a line boundary.
+ *     Chunks are read and parsed in parallel (date parsing in the Deadline/Event constructors dominates),
+ *     then concatenated in file order so task numbering is the same as with a sequential load.
+ * </p>
+ */
+class ParallelLoader {
+    /** Files smaller than this are loaded on the calling thread. */
+    static final long THRESHOLD = 16L << 20;
+
+    private static final int CHUNK_SIZE = 4 << 20;
+    private static final int SCAN_WINDOW = 8 * 1024;
+
+    /**
+     * Returns whether a file of the given size is worth loading in parallel.
+     */
+    static boolean isWorthwhile(long size) {
+        return size >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Parses every task in the file and appends them, in file order, to the given list.
+     *
+     * @param path Text save file.
+     * @param tasks List the tasks are appended to.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    static void load(Path path, List<Task> tasks) throws IOException {
+        load(path, tasks, CHUNK_SIZE);
+    }
+
+    /**
+     * Loads like {@link #load(Path, List)} with chunks of about the given size, e.g. small ones to test how
+     * lines are split between chunks.
+     */
+    static void load(Path path, List<Task> tasks, int chunkSize) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(ch, ch.size(), chunkSize);
+            @SuppressWarnings("unchecked")
+            ArrayList<Task>[] parts = (ArrayList<Task>[]) new ArrayList<?>[bounds.length - 1];
+            try {
+                ForkJoinPool.commonPool().invoke(new ParseChunks(ch, bounds, parts, 0, parts.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (ArrayList<Task> part : parts) {
+                total += part.size();
+            }
+            if (tasks instanceof ArrayList<Task> list) {
+                list.ensureCapacity(tasks.size() + total);
+            }
+            for (ArrayList<Task> part : parts) {
+                tasks.addAll(part);
+            }
+        }
+    }
+
+    /**
+     * Returns chunk start offsets followed by the file size; every chunk but the last ends just
+     * after a line terminator.
+     */
+    private static long[] chunkBounds(FileChannel ch, long size, int chunkSize) throws IOException {
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        long pos = chunkSize;
+        while (pos < size) {
+            long lineEnd = nextLineStart(ch, pos, size, window);
+            if (lineEnd >= size) {
+                break;
+            }
+            bounds.add(lineEnd);
+            pos = lineEnd + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = bounds.get(i);
+        }
+        return out;
+    }
+
+    private static long nextLineStart(FileChannel ch, long pos, long size, ByteBuffer window) throws IOException {
+        while (pos < size) {
+            window.clear();
+            int n = ch.read(window, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte c = window.get(i);
+                if (c == '\n' || c == '\r') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Parses chunks [lo, hi) by splitting the range in half until one chunk is left.
+     */
+    private static class ParseChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final long[] bounds;
+        private final ArrayList<Task>[] parts;
+        private final int lo;
+        private final int hi;
+
+        ParseChunks(FileChannel ch, long[] bounds, ArrayList<Task>[] parts, int lo, int hi) {
+            this.ch = ch;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ParseChunks(ch, bounds, parts, lo, mid),
+                        new ParseChunks(ch, bounds, parts, mid, hi));
+                return;
+            }
+
+            try {
+                int len = (int) (bounds[lo + 1] - bounds[lo]);
+                byte[] buf = new byte[len];
+                ByteBuffer bb = ByteBuffer.wrap(buf);
+                while (bb.hasRemaining()) {
+                    if (ch.read(bb, bounds[lo] + bb.position()) < 0) {
+                        break;
+                    }
+                }
+
+                ArrayList<Task> out = new ArrayList<>();
+                TaskFileReader reader = new TaskFileReader();
+                TaskFileReader.forEachLine(buf, 0, bb.position(), (b, start, end) -> {
+                    Task t = reader.parse(b, start, end);
+                    if (t != null) {
+                        out.add(t);
+                    }
+                });
+                parts[lo] = out;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package peggy;
+
+/**
+ * One line of user input, split once into its command word, whitespace-separated arguments and
+ * {@code /flag} segments.
+ * <p>
+ *     The line is scanned a single time, without regular expressions; handlers then read whichever view
+ *     they need. Whitespace means the same as {@code \s} in the regular expressions this replaces.
+ * </p>
+ */
+public class ParsedCommand {
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private final String text; // the trimmed input
+    private final String word;
+    private final CommandType type;
+    private final int[] bounds; // start and end of each argument in text
+    private final int argCount;
+
+    private ParsedCommand(String text, String word, int[] bounds, int argCount) {
+        this.text = text;
+        this.word = word;
+        this.type = CommandType.from(word);
+        this.bounds = bounds;
+        this.argCount = argCount;
+    }
+
+    /**
+     * Splits a line of input. A null or blank line gives a command with an empty word.
+     *
+     * @param input Line typed by the user.
+     * @return The parsed command.
+     */
+    public static ParsedCommand parse(String input) {
+        String text = input == null ? "" : input.trim();
+        int n = text.length();
+        int i = 0;
+        while (i < n && !isSpace(text.charAt(i))) {
+            i++;
+        }
+        String word = text.substring(0, i);
+
+        int[] bounds = NO_BOUNDS;
+        int count = 0;
+        while (i < n) {
+            while (i < n && isSpace(text.charAt(i))) {
+                i++;
+            }
+            if (i == n) {
+                break;
+            }
+            int start = i;
+            while (i < n && !isSpace(text.charAt(i))) {
+                i++;
+            }
+            if (count * 2 == bounds.length) {
+                int[] grown = new int[Math.max(8, bounds.length * 2)];
+                System.arraycopy(bounds, 0, grown, 0, bounds.length);
+                bounds = grown;
+            }
+            bounds[count * 2] = start;
+            bounds[count * 2 + 1] = i;
+            count++;
+        }
+        return new ParsedCommand(text, word, bounds, count);
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    /**
+     * Returns everything after the command word, trimmed, or an empty string.
+     */
+    public String getArgs() {
+        return argCount == 0 ? "" : text.substring(bounds[0]);
+    }
+
+    public int getArgCount() {
+        return argCount;
+    }
+
+    /**
+     * Returns the argument at the given position (0 is the first word after the command), or null.
+     */
+    public String getArg(int index) {
+        return index < argCount ? text.substring(bounds[index * 2], bounds[index * 2 + 1]) : null;
+    }
+
+    /**
+     * Splits the arguments at the given flags, in order: the text before {@code " /" + flags[0] + " "}, then
+     * the text between it and the next flag, and so on. Each flag is looked for after the previous one, and
+     * every segment is trimmed.
+     *
+     * @param flags Flag names without the slash, e.g. {@code "from", "to"}.
+     * @return The body followed by one value per flag, or null if a flag is missing.
+     */
+    public String[] splitFlags(String... flags) {
+        String args = getArgs();
+        String[] out = new String[flags.length + 1];
+        int segmentStart = 0;
+        for (int f = 0; f < flags.length; f++) {
+            int at = indexOfFlag(args, flags[f], segmentStart);
+            if (at < 0) {
+                return null;
+            }
+            out[f] = args.substring(segmentStart, at).trim();
+            segmentStart = at + flags[f].length() + 3;
+        }
+        out[flags.length] = args.substring(segmentStart).trim();
+        return out;
+    }
+
+    // position of " /flag " in s at or after from, or -1
+    private static int indexOfFlag(String s, String flag, int from) {
+        int last = s.length() - flag.length() - 3;
+        for (int i = s.indexOf(" /", from); i >= 0 && i <= last; i = s.indexOf(" /", i + 1)) {
+            if (s.startsWith(flag, i + 2) && s.charAt(i + 2 + flag.length()) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the characters matched by \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
@@ -3,9 +3,12 @@ package peggy;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.BitSet;
 import java.util.Locale;
+import java.util.stream.IntStream;
 
 public class Parser {
 
@@ -15,6 +18,13 @@ public class Parser {
     private static final DateTimeFormatter OUT_DATE_TIME =
             DateTimeFormatter.ofPattern("MMM dd yyyy HH:mm", Locale.ENGLISH);
 
+    private static final DateTimeFormatter IN_DMY_HHMM = DateTimeFormatter.ofPattern("d/M/yyyy HHmm");
+    private static final DateTimeFormatter IN_DMY_HH_MM = DateTimeFormatter.ofPattern("d/M/yyyy HH:mm");
+    private static final DateTimeFormatter IN_YMD_HHMM = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
+    private static final DateTimeFormatter IN_YMD_HH_MM = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter IN_DMY = DateTimeFormatter.ofPattern("d/M/yyyy");
+    private static final String STRICT_FLAG = "--strict";
+
     // Minimal requirement: accepts yyyy-MM-dd
     public static LocalDate parseDate(String raw) {
         try {
@@ -25,37 +35,165 @@ public class Parser {
     }
 
     public static String parseFindKeyword(String input) {
-        String[] parts = input.split("\\s+", 2);
-        if (parts.length < 2 || parts[1].isBlank()) {
+        return parseFindKeyword(ParsedCommand.parse(input));
+    }
+
+    public static String parseFindKeyword(ParsedCommand cmd) {
+        if (cmd.getArgCount() == 0) {
             throw new IllegalArgumentException("OOPS!!! The keyword of a find command cannot be empty.");
         }
-        return parts[1].trim();
+        return cmd.getArgs();
+    }
+
+    public static int[] parseListPage(String input, int defaultSize) {
+        return parseListPage(ParsedCommand.parse(input), defaultSize);
+    }
+
+    /**
+     * Parses {@code list [page] [page size]}.
+     *
+     * @return The 1-based page, or 0 if none was given, and the page size.
+     */
+    public static int[] parseListPage(ParsedCommand cmd, int defaultSize) {
+        int[] out = {0, defaultSize};
+        if (cmd.getArgCount() > 2) {
+            throw new IllegalArgumentException("Please give a valid page, e.g. list 2 or list 2 20");
+        }
+        for (int i = 0; i < cmd.getArgCount(); i++) {
+            try {
+                out[i] = Integer.parseInt(cmd.getArg(i));
+            } catch (NumberFormatException e) {
+                out[i] = 0;
+            }
+            if (out[i] <= 0) {
+                throw new IllegalArgumentException("Please give a valid page, e.g. list 2 or list 2 20");
+            }
+        }
+        return out;
+    }
+
+    public static LocalDate parseSchedule(String input) {
+        return parseSchedule(ParsedCommand.parse(input));
+    }
+
+    public static LocalDate parseSchedule(ParsedCommand cmd) {
+        if (cmd.getArgCount() == 0) {
+            throw new IllegalArgumentException("Please give a date, e.g. schedule 2019-12-02");
+        }
+        return parseDate(cmd.getArgs());
+    }
+
+    public static int parseUpcomingCount(String input, int defaultCount) {
+        return parseUpcomingCount(ParsedCommand.parse(input), defaultCount);
+    }
+
+    public static int parseUpcomingCount(ParsedCommand cmd, int defaultCount) {
+        if (cmd.getArgCount() == 0) {
+            return defaultCount;
+        }
+        try {
+            int k = Integer.parseInt(cmd.getArg(0));
+            if (k > 0) {
+                return k;
+            }
+        } catch (NumberFormatException ignored) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Please give a valid number of tasks, e.g. upcoming 5");
+    }
+
+    public static boolean isStrictRun(ParsedCommand cmd) {
+        return STRICT_FLAG.equals(cmd.getArg(0));
+    }
+
+    /**
+     * Returns the script file of {@code run [--strict] <file>}. The file name may contain spaces.
+     */
+    public static String parseRunFile(ParsedCommand cmd) {
+        String file = cmd.getArgs();
+        if (isStrictRun(cmd)) {
+            file = file.substring(STRICT_FLAG.length()).trim();
+        }
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Please give a script to run, e.g. run tasks.txt or run --strict tasks.txt");
+        }
+        return file;
+    }
+
+    /**
+     * Parses {@code between <from> <to>} into the inclusive range [from, to].
+     * Either time may contain a space (2/12/2019 1800), so every split of the words is tried and the first
+     * where both halves parse wins. A date-only {@code to} covers that whole day.
+     */
+    public static LocalDateTime[] parseBetween(String input) {
+        return parseBetween(ParsedCommand.parse(input));
+    }
+
+    /**
+     * Parses {@code between <from> <to>}; see {@link #parseBetween(String)}.
+     */
+    public static LocalDateTime[] parseBetween(ParsedCommand cmd) {
+        int n = cmd.getArgCount();
+        for (int i = 1; i < n; i++) {
+            String fromRaw = joinArgs(cmd, 0, i);
+            String toRaw = joinArgs(cmd, i, n);
+            LocalDateTime from;
+            LocalDateTime to;
+            try {
+                from = parseDateTime(fromRaw);
+                to = parseDateTime(toRaw);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (!toRaw.contains(" ") && !toRaw.contains("T")) {
+                to = to.toLocalDate().atTime(LocalTime.MAX);
+            }
+            if (from.isAfter(to)) {
+                throw new IllegalArgumentException("Range invalid: <from> must not be later than <to>.");
+            }
+            return new LocalDateTime[] { from, to };
+        }
+        throw new IllegalArgumentException(
+                "Between format: between <from> <to>, e.g. between 2019-12-01 2019-12-07"
+        );
     }
 
+    /**
+     * Parses a date/time in any of the accepted shapes (see {@link #parseDateTimeSlow(String)}).
+     * <p>
+     *     The common shapes are recognised by {@link #lexDateTime(String)} in a single pass without exceptions;
+     *     anything it is unsure about goes through the formatters, so results and error messages are unchanged.
+     * </p>
+     */
     public static LocalDateTime parseDateTime(String raw) {
         String s = raw.trim();
+        LocalDateTime dt = lexDateTime(s);
+        return dt != null ? dt : parseDateTimeSlow(s);
+    }
 
+    private static LocalDateTime parseDateTimeSlow(String s) {
         // from Storage: 2019-12-02T18:00
         try { return LocalDateTime.parse(s); } catch (DateTimeParseException ignored) {}
 
         // user input: 2/12/2019 1800
-        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy HHmm")); }
+        try { return LocalDateTime.parse(s, IN_DMY_HHMM); }
         catch (DateTimeParseException ignored) {}
 
         // also allow: 2/12/2019 18:00
-        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy HH:mm")); }
+        try { return LocalDateTime.parse(s, IN_DMY_HH_MM); }
         catch (DateTimeParseException ignored) {}
 
         // also allow: 2019-12-02 1800
-        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm")); }
+        try { return LocalDateTime.parse(s, IN_YMD_HHMM); }
         catch (DateTimeParseException ignored) {}
 
         // also allow: 2019-12-02 18:00
-        try { return LocalDateTime.parse(s, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")); }
+        try { return LocalDateTime.parse(s, IN_YMD_HH_MM); }
         catch (DateTimeParseException ignored) {}
 
         // date only -> start of day
-        try { return LocalDate.parse(s, DateTimeFormatter.ofPattern("d/M/yyyy")).atStartOfDay(); }
+        try { return LocalDate.parse(s, IN_DMY).atStartOfDay(); }
         catch (DateTimeParseException ignored) {}
 
         try { return LocalDate.parse(s).atStartOfDay(); } // yyyy-MM-dd
@@ -66,6 +204,165 @@ public class Parser {
         );
     }
 
+    /**
+     * Recognises the everyday shapes accepted by {@link #parseDateTimeSlow(String)}: ISO
+     * ({@code 2019-12-02T18:00[:ss[.nnn]]}), {@code d/M/yyyy} and {@code yyyy-MM-dd}, each optionally followed
+     * by {@code HHmm} or {@code HH:mm}.
+     * <p>
+     *     Mirrors the formatters: ISO input and a bare {@code yyyy-MM-dd} are strict, while the pattern shapes
+     *     move a day past the end of the month back to its last day (the SMART resolver).
+     * </p>
+     *
+     * @return The date/time, or null if the text is not in one of these shapes or is out of range.
+     */
+    static LocalDateTime lexDateTime(CharSequence s) {
+        return lex(s, false);
+    }
+
+    /**
+     * Returns whether {@link #lexDateTime(CharSequence)} recognises the text, without making the date/time,
+     * e.g. to check the dates of a save file line that is only parsed later. When it does not,
+     * {@link #parseDateTime(String)} may still accept the text through the formatters.
+     */
+    static boolean isLexedDateTime(CharSequence s) {
+        return lex(s, true) != null;
+    }
+
+    // the date/time, or LocalDateTime.MIN if isChecked and it is valid, so checking allocates nothing
+    private static LocalDateTime lex(CharSequence s, boolean isChecked) {
+        int n = s.length();
+        int year;
+        int month;
+        int day;
+        int pos;
+        boolean isPattern; // went through an ofPattern formatter rather than an ISO one
+        if (n >= 10 && s.charAt(4) == '-') {
+            year = digits(s, 0, 4);
+            month = digits(s, 5, 7);
+            day = digits(s, 8, 10);
+            if (s.charAt(7) != '-' || (year | month | day) < 0) {
+                return null;
+            }
+            if (n > 10 && s.charAt(10) == 'T') {
+                return lexIsoTime(s, year, month, day, isChecked);
+            }
+            pos = 10;
+            isPattern = n > 10;
+        } else {
+            int slash1 = indexOf(s, '/', 0);
+            int slash2 = slash1 < 0 ? -1 : indexOf(s, '/', slash1 + 1);
+            if (slash1 < 1 || slash1 > 2 || slash2 - slash1 < 2 || slash2 - slash1 > 3) {
+                return null;
+            }
+            day = digits(s, 0, slash1);
+            month = digits(s, slash1 + 1, slash2);
+            pos = slash2 + 5;
+            year = pos <= n ? digits(s, slash2 + 1, pos) : -1;
+            if ((year | month | day) < 0) {
+                return null;
+            }
+            isPattern = true;
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        int length = lengthOfMonth(year, month);
+        if (isPattern ? year < 1 : day > length) {
+            return null;
+        }
+        day = Math.min(day, length);
+        if (pos == n) {
+            return isChecked ? LocalDateTime.MIN : LocalDateTime.of(year, month, day, 0, 0);
+        }
+
+        // " HHmm" or " HH:mm"
+        if (s.charAt(pos) != ' ' || n < pos + 5) {
+            return null;
+        }
+        int hour = digits(s, pos + 1, pos + 3);
+        int minute;
+        if (n == pos + 5) {
+            minute = digits(s, pos + 3, pos + 5);
+        } else if (n == pos + 6 && s.charAt(pos + 3) == ':') {
+            minute = digits(s, pos + 4, pos + 6);
+        } else {
+            return null;
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return null;
+        }
+        return isChecked ? LocalDateTime.MIN : LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    // "THH:mm[:ss[.n{1,9}]]" after an ISO date, resolved strictly
+    private static LocalDateTime lexIsoTime(CharSequence s, int year, int month, int day, boolean isChecked) {
+        int n = s.length();
+        if (n < 16 || s.charAt(13) != ':') {
+            return null;
+        }
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = 0;
+        int nano = 0;
+        if (n > 16) {
+            if (n < 19 || s.charAt(16) != ':') {
+                return null;
+            }
+            second = digits(s, 17, 19);
+            if (n > 19) {
+                int fraction = n - 20;
+                if (s.charAt(19) != '.' || fraction < 1 || fraction > 9) {
+                    return null;
+                }
+                nano = digits(s, 20, n);
+                for (int i = fraction; i < 9 && nano >= 0; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || nano < 0) {
+            return null;
+        }
+        return isChecked ? LocalDateTime.MIN : LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    // value of the ASCII digits in s[start, end), or -1 if any other character is there
+    private static int digits(CharSequence s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return month == 2 ? (Year.isLeap(year) ? 29 : 28) : 31 - (month - 1) % 7 % 2;
+    }
+
+    // arguments from..to-1 separated by single spaces
+    private static String joinArgs(ParsedCommand cmd, int from, int to) {
+        StringBuilder sb = new StringBuilder(cmd.getArg(from));
+        for (int i = from + 1; i < to; i++) {
+            sb.append(' ').append(cmd.getArg(i));
+        }
+        return sb.toString();
+    }
+
     public static String formatDate(LocalDate d) {
         return d.format(OUT_DATE);
     }
@@ -78,20 +375,21 @@ public class Parser {
     }
 
     public static CommandType parseCommandType(String input) {
-        String[] parts = input.trim().split("\\s+", 2);
-        String cmdWord = parts[0];
-        return CommandType.from(cmdWord);
+        return ParsedCommand.parse(input).getType();
     }
 
     public static int parseIndex(String input, int size, String cmd) {
-        String[] parts = input.trim().split("\\s+");
-        if (parts.length < 2 || parts[1].isBlank()) {
+        return parseIndex(ParsedCommand.parse(input), size, cmd);
+    }
+
+    public static int parseIndex(ParsedCommand command, int size, String cmd) {
+        if (command.getArgCount() == 0) {
             throw new IllegalArgumentException("Please give a task number, e.g. " + cmd + " 2");
         }
 
         int idx;
         try {
-            idx = Integer.parseInt(parts[1]) - 1; // convert to 0-based
+            idx = Integer.parseInt(command.getArg(0)) - 1; // convert to 0-based
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Please give a valid task number, e.g. " + cmd + " 2");
         }
@@ -102,24 +400,94 @@ public class Parser {
         return idx;
     }
 
+    /**
+     * Parses the tasks a mark, unmark or delete command applies to: a task number ({@code 2}), a range
+     * ({@code 1-500}), a list of either ({@code 3,7,9-20} or {@code 3 7 9-20}), or one of {@code all},
+     * {@code done} and {@code undone}. A single task number gives the same errors as
+     * {@link #parseIndex(ParsedCommand, int, String)}.
+     *
+     * @return 0-based indexes in ascending order, without duplicates.
+     */
+    public static int[] parseIndexes(ParsedCommand command, TaskList tasks, String cmd) {
+        if (command.getArgCount() == 1) {
+            String arg = command.getArg(0);
+            switch (arg.toLowerCase()) {
+                case "all":
+                    return IntStream.range(0, tasks.size()).toArray();
+                case "done":
+                    return tasks.indexesWithStatus(true);
+                case "undone":
+                    return tasks.indexesWithStatus(false);
+                default:
+                    break;
+            }
+            if (arg.indexOf(',') < 0 && arg.indexOf('-', 1) < 0) {
+                return new int[] {parseIndex(command, tasks.size(), cmd)};
+            }
+        }
+        if (command.getArgCount() == 0) {
+            parseIndex(command, tasks.size(), cmd); // throws the usual message
+        }
+
+        BitSet selected = new BitSet(tasks.size());
+        String args = command.getArgs();
+        int start = 0;
+        for (int i = 0; i <= args.length(); i++) {
+            if (i == args.length() || args.charAt(i) == ',' || Character.isWhitespace(args.charAt(i))) {
+                if (i > start) {
+                    selectRange(args.substring(start, i), tasks.size(), cmd, selected);
+                }
+                start = i + 1;
+            }
+        }
+        return selected.stream().toArray();
+    }
+
+    // a task number or from-to range, 1-based and inclusive
+    private static void selectRange(String part, int size, String cmd, BitSet selected) {
+        int dash = part.indexOf('-', 1);
+        int from;
+        int to;
+        try {
+            from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash));
+            to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Please give valid task numbers, e.g. " + cmd + " 2, "
+                    + cmd + " 1-5 or " + cmd + " 3,7,9-20");
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("Please write ranges from low to high, e.g. " + cmd + " 9-20");
+        }
+        if (from < 1 || to > size) {
+            throw new IllegalArgumentException("Task number out of range.");
+        }
+        selected.set(from - 1, to);
+    }
+
     public static String parseTodoDesc(String input) {
-        String[] parts = input.split(" ", 2);
-        if (parts.length < 2 || parts[1].isBlank()) {
+        return parseTodoDesc(ParsedCommand.parse(input));
+    }
+
+    public static String parseTodoDesc(ParsedCommand cmd) {
+        if (cmd.getArgCount() == 0) {
             throw new IllegalArgumentException("OOPS!!! The description of a todo cannot be empty.");
         }
-        return parts[1].trim();
+        return cmd.getArgs();
     }
 
     public static String[] parseDeadline(String input) {
-        String rest = input.substring("deadline".length()).trim();
-        String[] parts = rest.split(" /by ", 2);
+        return parseDeadline(ParsedCommand.parse(input));
+    }
+
+    public static String[] parseDeadline(ParsedCommand cmd) {
+        String[] parts = cmd.splitFlags("by");
 
-        if (parts.length < 2) {
+        if (parts == null) {
             throw new IllegalArgumentException("Deadline format: deadline <desc> /by <when>");
         }
 
-        String desc = parts[0].trim();
-        String byRaw = parts[1].trim();
+        String desc = parts[0];
+        String byRaw = parts[1];
 
         if (desc.isBlank()) {
             throw new IllegalArgumentException("OOPS!!! The description of a deadline cannot be empty.");
@@ -135,22 +503,18 @@ public class Parser {
     }
 
     public static String[] parseEvent(String input) {
-        String rest = input.substring("event".length()).trim();
-
-        String[] p1 = rest.split(" /from ", 2);
-        if (p1.length < 2) {
-            throw new IllegalArgumentException("Event format: event <desc> /from <start> /to <end>");
-        }
-
-        String desc = p1[0].trim();
+        return parseEvent(ParsedCommand.parse(input));
+    }
 
-        String[] p2 = p1[1].split(" /to ", 2);
-        if (p2.length < 2) {
+    public static String[] parseEvent(ParsedCommand cmd) {
+        String[] parts = cmd.splitFlags("from", "to");
+        if (parts == null) {
             throw new IllegalArgumentException("Event format: event <desc> /from <start> /to <end>");
         }
 
-        String fromRaw = p2[0].trim();
-        String toRaw = p2[1].trim();
+        String desc = parts[0];
+        String fromRaw = parts[1];
+        String toRaw = parts[2];
 
         if (desc.isBlank()) {
             throw new IllegalArgumentException("OOPS!!! The description of an event cannot be empty.");
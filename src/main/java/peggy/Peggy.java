@@ -1,6 +1,21 @@
 package peggy;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import peggy.task.Deadline;
 import peggy.task.Event;
@@ -8,25 +23,135 @@ import peggy.task.Task;
 import peggy.task.ToDo;
 
 /**
- * Core logic for Peggy. GUI/CLI should call {@link #getResponse(String)}.
+ * Core logic for Peggy. GUI/CLI should call {@link #getResponse(String)}, or {@link #respond(String, Appendable)}
+ * to stream long responses.
+ * <p>
+ *     Safe to share between threads: queries run side by side under a read lock, while changes and whole
+ *     scripts take the write lock. Each client keeps its own {@link Session}; the methods without one share
+ *     a default session, which suits a single client such as the GUI. Saving happens on the persistence
+ *     thread from a {@link TaskList#snapshot()}.
+ * </p>
  */
 public class Peggy {
     private static final String LINE = "---------------------------------------------";
-
-    private final Storage storage;
-    private final TaskList tasks;
+    private static final int FUZZY_MATCHES = 10;
+    private static final int UPCOMING_DEFAULT = 5;
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int BULK_SHOWN = 10;
+
+    private final PersistenceWriter writer; // null when the tasks are mapped, as the mapped file is then saved
+    private final MappedTaskStore mapped; // the tasks' file with the mapped backend, else null
+    private final Storage saveFile; // written back from the mapped file on close; null when not mapped
+    private final DurabilityPolicy policy;
+    private final Metrics metrics = new Metrics();
+    // queries share the read lock; changes, and scripts as a whole, take the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Session defaultSession = new Session();
+    private TaskList tasks;
+    private List<String> heldRecords; // journal records of the running script, saved when it ends; else null
+    private String lastError; // message of the last rejected command, only tracked while a script runs
 
     public Peggy(String filePath) {
-        this.storage = new Storage(filePath);
+        this(filePath, DurabilityPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates Peggy backed by the given save file.
+     *
+     * @param filePath Path of the save file.
+     * @param policy How often changes are forced to disk.
+     */
+    public Peggy(String filePath, DurabilityPolicy policy) {
+        this(filePath, policy, TaskList.Backend.TREE);
+    }
+
+    /**
+     * Creates Peggy backed by the given save file, holding the tasks in memory as the backend says.
+     * <p>
+     *     With {@link TaskList.Backend#MAPPED} the tasks live in {@code <file>.map} instead, filled from the
+     *     save file the first time and only mapped after that; changes go straight to it, and {@link #close()}
+     *     writes them back to the save file if there were any. Any other backend first writes back a mapped
+     *     file that was not closed cleanly, then deletes it, so the save file is again the one copy of the
+     *     tasks. With {@link TaskList.Backend#LAZY} each task is parsed from the save file when it is first
+     *     read.
+     * </p>
+     *
+     * @param filePath Path of the save file.
+     * @param policy How often changes are forced to disk.
+     * @param backend How the tasks are held, e.g. {@link TaskList.Backend#COLUMNAR} for millions of tasks.
+     * @throws UncheckedIOException If the mapped file cannot be opened, filled from the save file or written
+     *     back.
+     */
+    public Peggy(String filePath, DurabilityPolicy policy, TaskList.Backend backend) {
+        Storage storage = new Storage(filePath, true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+        this.policy = policy;
+        if (backend == TaskList.Backend.MAPPED) {
+            this.mapped = openMapped(storage, Path.of(filePath + ".map"));
+            this.tasks = new TaskList(mapped, backend);
+            this.saveFile = storage;
+            this.writer = null;
+            return;
+        }
+
+        reclaimMapped(storage, Path.of(filePath + ".map"));
 
         TaskList loaded;
         try {
-            ArrayList<Task> list = storage.load();
-            loaded = new TaskList(list);
+            loaded = backend == TaskList.Backend.LAZY
+                    ? new TaskList(storage.loadLazily(), backend)
+                    : new TaskList(storage.load(), backend);
         } catch (Exception e) {
-            loaded = new TaskList();
+            loaded = backend == TaskList.Backend.LAZY
+                    ? new TaskList(new LazyTaskStore(new ArrayList<>()), backend)
+                    : new TaskList(new ArrayList<>(), backend);
         }
         this.tasks = loaded;
+        this.writer = new PersistenceWriter(storage, policy);
+        this.mapped = null;
+        this.saveFile = null;
+    }
+
+    // fills a new mapped file from the save file, moving it into place only once complete; a save file that
+    // cannot be loaded fails the open, as a map of no tasks would be written back over it on close
+    private static MappedTaskStore openMapped(Storage storage, Path path) {
+        try {
+            if (!Files.exists(path)) {
+                List<Task> saved = storage.load();
+                Path filling = path.resolveSibling(path.getFileName() + ".new");
+                Files.deleteIfExists(filling);
+                Files.deleteIfExists(MappedTaskStore.overflowPath(filling));
+                Files.deleteIfExists(MappedTaskStore.tailPath(filling));
+                try (MappedTaskStore store = MappedTaskStore.open(filling)) {
+                    store.reset(saved);
+                    store.setSaved(true); // the save file holds these very tasks
+                }
+                Files.move(MappedTaskStore.overflowPath(filling), MappedTaskStore.overflowPath(path),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.move(filling, path, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return MappedTaskStore.open(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // writes back a mapped file whose changes the save file lacks, then deletes it so the save file is loaded
+    private static void reclaimMapped(Storage storage, Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            try (MappedTaskStore store = MappedTaskStore.open(path)) {
+                if (!store.isSaved()) {
+                    storage.save(store);
+                }
+            }
+            Files.delete(path);
+            Files.deleteIfExists(MappedTaskStore.overflowPath(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write back " + path + ": " + e.getMessage(), e);
+        }
     }
 
     public String getWelcomeMessage() {
@@ -37,59 +162,131 @@ public class Peggy {
     }
 
     public boolean isExitCommand(String input) {
-        if (input == null) {
-            return false;
+        return ParsedCommand.parse(input).getType() == CommandType.BYE;
+    }
+
+    public String getResponse(String input) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            respond(input, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
         }
-        String trimmed = input.trim();
-        if (trimmed.isEmpty()) {
-            return false;
+        return sb.toString();
+    }
+
+    /**
+     * Writes the response to the input to {@code out}. Listings are written task by task rather than
+     * built up in memory first, so the sink can show or forward them as they come.
+     *
+     * @param input Line typed by the user.
+     * @param out Where the response goes, e.g. a console writer or a {@link ChunkedSink}.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public void respond(String input, Appendable out) throws IOException {
+        respond(defaultSession, input, out);
+    }
+
+    /**
+     * Like {@link #respond(String, Appendable)}, for one of several clients sharing this Peggy. Commands
+     * from different sessions may run on different threads at once: queries run side by side, changes one
+     * at a time. The lock is held while writing to {@code out}, so pass a buffer rather than a socket.
+     *
+     * @param session The client's session, which remembers where its next {@code more} starts.
+     * @param input Line typed by the user.
+     * @param out Where the response goes.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public void respond(Session session, String input, Appendable out) throws IOException {
+        metrics.begin();
+        ParsedCommand cmd = ParsedCommand.parse(input);
+        metrics.lap(Metrics.Phase.PARSE);
+        try {
+            respond(session, cmd, out);
+        } finally {
+            metrics.end(cmd.getType());
         }
-        String cmdWord = trimmed.split("\\s+")[0];
-        return CommandType.from(cmdWord) == CommandType.BYE;
     }
 
-    public String getResponse(String input) {
-        if (input == null) {
-            return formatError("OOPS!!! I don't know what that means :-(");
+    private void respond(Session session, ParsedCommand cmd, Appendable out) throws IOException {
+        Lock held = cmd.getType().isQuery() ? lock.readLock() : lock.writeLock();
+        held.lock();
+        try {
+            dispatch(session, cmd, out);
+        } finally {
+            held.unlock();
         }
+    }
 
-        String trimmed = input.trim();
-        if (trimmed.isBlank()) {
-            return formatError("OOPS!!! I don't know what that means :-(");
+    private void dispatch(Session session, ParsedCommand cmd, Appendable out) throws IOException {
+        switch (cmd.getType()) {
+            case LIST:
+                writeList(session, cmd, out);
+                break;
+
+            case MORE:
+                writeMore(session, out);
+                break;
+
+            case RUN:
+                runScriptFile(cmd, out);
+                break;
+
+            case STATS:
+                writeStats(out);
+                break;
+
+            default:
+                out.append(handle(cmd));
+                break;
         }
+    }
 
-        String cmdWord = trimmed.split("\\s+", 2)[0];
-        CommandType cmd = CommandType.from(cmdWord);
+    private String handle(ParsedCommand cmd) {
+        if (cmd.isEmpty()) {
+            return formatError("OOPS!!! I don't know what that means :-(");
+        }
 
-        switch (cmd) {
+        switch (cmd.getType()) {
             case BYE:
+                flushQuietly();
+                startRendering();
                 return LINE + "\n"
                         + "Bye. Hope to see you again soon!\n"
                         + LINE;
 
-            case LIST:
-                return formatList();
-
             case MARK:
-                return handleMark(trimmed);
+                return handleMark(cmd);
 
             case UNMARK:
-                return handleUnmark(trimmed);
+                return handleUnmark(cmd);
 
             case DELETE:
-                return handleDelete(trimmed);
+                return handleDelete(cmd);
 
             case TODO:
-                return handleTodo(trimmed);
+                return handleTodo(cmd);
 
             case DEADLINE:
-                return handleDeadline(trimmed);
+                return handleDeadline(cmd);
 
             case EVENT:
-                return handleEvent(trimmed);
+                return handleEvent(cmd);
 
             case FIND:
-                return handleFind(trimmed);
+                return handleFind(cmd);
+
+            case SCHEDULE:
+                return handleSchedule(cmd);
+
+            case BETWEEN:
+                return handleBetween(cmd);
+
+            case UPCOMING:
+                return handleUpcoming(cmd);
+
+            case OVERDUE:
+                return formatMatches("Here are your overdue tasks:", tasks.overdue(LocalDateTime.now()));
 
             case HELP:
                 return formatHelp();
@@ -102,22 +299,369 @@ public class Peggy {
         }
     }
 
-    private String formatList() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(LINE).append("\n");
-        if (tasks.isEmpty()) {
-            sb.append("Your list is empty.\n");
+    /**
+     * Copies up to {@code count} tasks from position {@code start} into {@code into}, for callers that
+     * render the tasks themselves (e.g. as JSON) after the lock is released.
+     *
+     * @return The number of tasks in the list at the time.
+     */
+    public int copyTasks(int start, int count, List<Task> into) {
+        metrics.begin();
+        lock.readLock().lock();
+        try {
+            int end = (int) Math.min((long) start + Math.max(count, 0), tasks.size());
+            for (int i = Math.max(start, 0); i < end; i++) {
+                into.add(tasks.get(i));
+            }
+            return tasks.size();
+        } finally {
+            lock.readLock().unlock();
+            metrics.end(CommandType.LIST);
+        }
+    }
+
+    /**
+     * Copies the tasks matching the keyword into {@code into}, as {@code find} (or {@code find ~} when
+     * fuzzy) would list them.
+     */
+    public void search(String keyword, boolean isFuzzy, List<Task> into) {
+        metrics.begin();
+        lock.readLock().lock();
+        try {
+            TaskList matches = isFuzzy ? tasks.fuzzyFind(keyword, FUZZY_MATCHES) : tasks.find(keyword);
+            into.addAll(matches.asList());
+        } finally {
+            lock.readLock().unlock();
+            metrics.end(CommandType.FIND);
+        }
+    }
+
+    /**
+     * Adds a task to the end of the list.
+     *
+     * @return The number of tasks after adding it.
+     */
+    public int add(Task task) {
+        metrics.begin();
+        lock.writeLock().lock();
+        try {
+            addTask(task);
+            return tasks.size();
+        } finally {
+            lock.writeLock().unlock();
+            metrics.end(task instanceof Deadline ? CommandType.DEADLINE
+                    : task instanceof Event ? CommandType.EVENT : CommandType.TODO);
+        }
+    }
+
+    /**
+     * Marks the selected tasks as done or not done. The selection is written as after {@code mark},
+     * e.g. {@code 2}, {@code 1-5,7} or {@code done}.
+     *
+     * @param changed Receives the marked tasks, in list order.
+     * @return Their 0-based positions.
+     * @throws IllegalArgumentException If the selection is invalid.
+     */
+    public int[] mark(String selection, boolean isDone, List<Task> changed) {
+        metrics.begin();
+        lock.writeLock().lock();
+        try {
+            int[] indexes = Parser.parseIndexes(ParsedCommand.parse("mark " + selection), tasks, "mark");
+            metrics.lap(Metrics.Phase.PARSE);
+            if (indexes.length > 0) {
+                changed.addAll(markAll(indexes, isDone));
+            }
+            return indexes;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.end(isDone ? CommandType.MARK : CommandType.UNMARK);
+        }
+    }
+
+    /**
+     * Deletes the selected tasks; see {@link #mark(String, boolean, List)} for the selection.
+     *
+     * @param removed Receives the removed tasks, in list order.
+     * @return Their 0-based positions before removal.
+     * @throws IllegalArgumentException If the selection is invalid.
+     */
+    public int[] delete(String selection, List<Task> removed) {
+        metrics.begin();
+        lock.writeLock().lock();
+        try {
+            int[] indexes = Parser.parseIndexes(ParsedCommand.parse("delete " + selection), tasks, "delete");
+            metrics.lap(Metrics.Phase.PARSE);
+            if (indexes.length > 0) {
+                removed.addAll(deleteAll(indexes));
+            }
+            return indexes;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.end(CommandType.DELETE);
+        }
+    }
+
+    /**
+     * Runs a script of commands, one per line, as a single transaction: its changes are saved together
+     * when it ends instead of after every line. Blank lines and lines starting with {@code #} are skipped,
+     * and {@code bye} ends the script early.
+     * <p>
+     *     Rejected lines are reported and skipped. In strict mode the first rejected line instead undoes
+     *     everything the script changed, and nothing is saved. The report ends with the script's throughput.
+     * </p>
+     *
+     * @param script Commands to run.
+     * @param name Name of the script, for the report.
+     * @param isStrict Whether a rejected line rolls back the whole script.
+     * @param out Where rejected lines and the report go.
+     * @return Whether the script's changes were kept.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public boolean runScript(BufferedReader script, String name, boolean isStrict, Appendable out)
+            throws IOException {
+        metrics.begin();
+        lock.writeLock().lock();
+        try {
+            return runScriptLocked(script, name, isStrict, out);
+        } finally {
+            lock.writeLock().unlock();
+            metrics.end(CommandType.RUN);
+        }
+    }
+
+    private boolean runScriptLocked(BufferedReader script, String name, boolean isStrict, Appendable out)
+            throws IOException {
+        Session session = new Session();
+        long startNanos = System.nanoTime();
+        List<Task> before = isStrict ? tasks.snapshot() : null;
+        StringBuilder ignored = new StringBuilder();
+        int lineNumber = 0;
+        int commands = 0;
+        int failed = 0;
+        heldRecords = new ArrayList<>();
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                lineNumber++;
+                ParsedCommand cmd = ParsedCommand.parse(line);
+                if (cmd.isEmpty() || cmd.getWord().startsWith("#")) {
+                    continue;
+                }
+                if (cmd.getType() == CommandType.BYE) {
+                    break;
+                }
+                commands++;
+                lastError = null;
+                ignored.setLength(0);
+                try {
+                    respond(session, cmd, ignored);
+                } catch (RuntimeException e) {
+                    lastError = "Unexpected error: " + e.getMessage();
+                }
+                if (lastError == null) {
+                    continue;
+                }
+                failed++;
+                if (failed <= MAX_REPORTED_ERRORS) {
+                    out.append("Line ").append(Integer.toString(lineNumber)).append(": ").append(lastError)
+                            .append('\n');
+                }
+                if (isStrict) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failed++;
+            out.append("Could not read ").append(name).append(": ").append(e.getMessage()).append('\n');
+        } finally {
+            lastError = null;
+        }
+        List<String> records = heldRecords;
+        heldRecords = null;
+
+        boolean isKept = !isStrict || failed == 0;
+        String outcome;
+        if (isKept) {
+            outcome = commit(records);
         } else {
-            sb.append("Here are the tasks in your list:\n");
-            for (int i = 0; i < tasks.size(); i++) {
-                sb.append(i + 1).append(". ").append(tasks.get(i)).append("\n");
+            tasks.restore(before);
+            outcome = "Rolled back: nothing from " + name + " was saved.";
+        }
+
+        long nanos = Math.max(1, System.nanoTime() - startNanos);
+        if (failed > MAX_REPORTED_ERRORS) {
+            out.append("(").append(Integer.toString(failed - MAX_REPORTED_ERRORS)).append(" more not shown)\n");
+        }
+        out.append("Ran ").append(Integer.toString(commands)).append(commands == 1 ? " command" : " commands")
+                .append(" from ").append(name)
+                .append(String.format(" in %.3f s (%.0f commands/s)", nanos / 1e9, commands * 1e9 / nanos));
+        if (failed > 0) {
+            out.append("; ").append(Integer.toString(failed)).append(" failed");
+        }
+        out.append(".\n").append(outcome);
+        return isKept;
+    }
+
+    private void runScriptFile(ParsedCommand cmd, Appendable out) throws IOException {
+        if (heldRecords != null) {
+            out.append(formatError("A script cannot run another script."));
+            return;
+        }
+        String file;
+        try {
+            file = Parser.parseRunFile(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
+        } catch (IllegalArgumentException e) {
+            out.append(formatError(e.getMessage()));
+            return;
+        }
+        BufferedReader script;
+        try {
+            script = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            out.append(formatError("Could not find the script " + file + "."));
+            return;
+        } catch (IOException | InvalidPathException e) {
+            out.append(formatError("Could not open " + file + ": " + e.getMessage()));
+            return;
+        }
+        try (script) {
+            out.append(LINE).append('\n');
+            runScript(script, file, Parser.isStrictRun(cmd), out);
+            out.append('\n').append(LINE);
+        }
+    }
+
+    // one write for the whole script: its records, or a fresh snapshot when that is no bigger
+    private String commit(List<String> records) {
+        if (records.isEmpty()) {
+            return "Nothing to save.";
+        }
+        metrics.lap(Metrics.Phase.EXECUTE);
+        try {
+            if (mapped != null) {
+                mapped.force();
+            } else if (records.size() >= tasks.size()) {
+                writer.submitSnapshot(tasks.snapshot());
+                writer.flush();
+            } else {
+                writer.submitAll(records);
+                writer.flush();
             }
+            return "Saved " + records.size() + (records.size() == 1 ? " change" : " changes") + " in one commit.";
+        } catch (IOException e) {
+            metrics.saveFailed(e);
+            return "Could not save the changes: " + e.getMessage();
+        } finally {
+            metrics.lap(Metrics.Phase.PERSIST);
         }
-        sb.append(LINE);
-        return sb.toString();
+    }
+
+    private void writeList(Session session, ParsedCommand cmd, Appendable out) throws IOException {
+        int[] page;
+        try {
+            page = Parser.parseListPage(cmd, PAGE_SIZE);
+            metrics.lap(Metrics.Phase.PARSE);
+        } catch (IllegalArgumentException e) {
+            out.append(formatError(e.getMessage()));
+            return;
+        }
+        if (tasks.isEmpty()) {
+            session.moreFrom = -1;
+            startRendering();
+            out.append(LINE).append("\nYour list is empty.\n").append(LINE);
+            return;
+        }
+
+        // a bare "list" shows everything unless that is more than a page
+        boolean isWhole = page[0] == 0 && tasks.size() <= PAGE_SIZE;
+        int size = isWhole ? tasks.size() : page[1];
+        int start = page[0] == 0 ? 0 : (int) Math.min((page[0] - 1L) * size, Integer.MAX_VALUE);
+        if (start >= tasks.size()) {
+            int pages = (tasks.size() - 1) / size + 1;
+            out.append(formatError("There is no page " + page[0] + "; your list has " + pages
+                    + (pages == 1 ? " page." : " pages.")));
+            return;
+        }
+        writePage(session, start, size, out);
+    }
+
+    private void writeMore(Session session, Appendable out) throws IOException {
+        if (session.moreFrom < 0 || session.moreFrom >= tasks.size()) {
+            session.moreFrom = -1;
+            out.append(formatError("No more tasks to show. Type 'list' to start from the top."));
+            return;
+        }
+        writePage(session, session.moreFrom, session.morePageSize, out);
+    }
+
+    // numbered as mark/delete expect; remembers where the next 'more' starts
+    private void writePage(Session session, int start, int size, Appendable out) throws IOException {
+        startRendering();
+        int end = (int) Math.min((long) start + size, tasks.size());
+        out.append(LINE).append('\n');
+        out.append("Here are the tasks in your list:\n");
+        for (int i = start; i < end; i++) {
+            out.append(Integer.toString(i + 1)).append(". ").append(tasks.get(i).toString()).append('\n');
+        }
+        if (start > 0 || end < tasks.size()) {
+            out.append("(Showing ").append(Integer.toString(start + 1)).append('-').append(Integer.toString(end))
+                    .append(" of ").append(Integer.toString(tasks.size()))
+                    .append(end < tasks.size() ? ". Type 'more' for the next page.)\n" : ".)\n");
+        }
+        out.append(LINE);
+        session.moreFrom = end < tasks.size() ? end : -1;
+        session.morePageSize = size;
+    }
+
+    // p50 / p90 / p99 / max of every command used so far, whole and by phase, then the save counters
+    private void writeStats(Appendable out) throws IOException {
+        startRendering();
+        out.append(LINE).append('\n');
+        out.append("Response times since start (p50 / p90 / p99 / max):\n");
+        boolean isAny = false;
+        for (CommandType type : CommandType.values()) {
+            LatencyHistogram whole = metrics.histogram(type, null);
+            if (whole.getCount() == 0) {
+                continue;
+            }
+            isAny = true;
+            out.append(type.name().toLowerCase()).append(" x").append(Long.toString(whole.getCount())).append('\n');
+            writePercentiles("total", whole, out);
+            for (Metrics.Phase phase : Metrics.Phase.values()) {
+                writePercentiles(phase.name().toLowerCase(), metrics.histogram(type, phase), out);
+            }
+        }
+        if (!isAny) {
+            out.append("(no commands yet)\n");
+        }
+        if (mapped != null) {
+            out.append("Saves: straight to the mapped file, to the save file on exit; ")
+                    .append(Long.toString(metrics.getUnsavedCommands())).append(" commands not saved.\n");
+        } else {
+            out.append("Saves: ").append(Metrics.formatBytes(writer.getBytesWritten())).append(" in ")
+                    .append(Long.toString(writer.getWrites())).append(" writes; ")
+                    .append(Long.toString(writer.getFailedWrites())).append(" failed writes, ")
+                    .append(Long.toString(metrics.getUnsavedCommands())).append(" commands not saved.\n");
+        }
+        String error = metrics.getLastSaveError();
+        if (error == null && writer != null) {
+            error = writer.getLastFailure();
+        }
+        if (error != null) {
+            out.append("Last save error: ").append(error).append('\n');
+        }
+        out.append(LINE);
+    }
+
+    private static void writePercentiles(String name, LatencyHistogram h, Appendable out) throws IOException {
+        out.append(String.format("  %-8s %s / %s / %s / %s\n", name,
+                Metrics.formatNanos(h.percentile(0.5)), Metrics.formatNanos(h.percentile(0.9)),
+                Metrics.formatNanos(h.percentile(0.99)), Metrics.formatNanos(h.getMax())));
     }
 
     private String formatHello() {
+        startRendering();
         return LINE + "\n"
                 + "Hi! 🙂\n"
                 + "Type 'help' to see what I can do.\n"
@@ -125,32 +669,44 @@ public class Peggy {
     }
 
     private String formatHelp() {
+        startRendering();
         return LINE + "\n"
                 + "Here are the commands you can use:\n"
-                + "  list\n"
+                + "  list [page] [page size]\n"
+                + "  more\n"
                 + "  todo <description>\n"
                 + "  deadline <description> /by <time>\n"
                 + "  event <description> /from <time> /to <time>\n"
-                + "  mark <task number>\n"
-                + "  unmark <task number>\n"
-                + "  delete <task number>\n"
+                + "  mark <task numbers>     (e.g. 2, 1-500, 3,7,9-20, all, done or undone)\n"
+                + "  unmark <task numbers>\n"
+                + "  delete <task numbers>\n"
                 + "  find <keyword>\n"
+                + "  find ~<keyword>   (closest matches, typos allowed)\n"
+                + "  schedule <date>\n"
+                + "  between <time> <time>\n"
+                + "  upcoming [count]\n"
+                + "  overdue\n"
+                + "  run [--strict] <file>   (one command per line, saved once at the end)\n"
+                + "  stats                   (response times and saves since start)\n"
                 + "  bye\n"
                 + LINE;
     }
 
 
-    private String handleMark(String input) {
+    private String handleMark(ParsedCommand cmd) {
         try {
-            int idx = Parser.parseIndex(input, tasks.size(), "mark");
-            assert idx >= 0 && idx < tasks.size() : "Parser returned out-of-range index: " + idx;
-            Task t = tasks.get(idx);
-            t.markAsDone();
-            saveQuietly();
+            int[] indexes = Parser.parseIndexes(cmd, tasks, "mark");
+            metrics.lap(Metrics.Phase.PARSE);
+            if (indexes.length == 0) {
+                return formatNone();
+            }
+            List<Task> marked = markAll(indexes, true);
 
             return LINE + "\n"
-                    + "Nice! I've marked this task as done:\n"
-                    + "  " + t + "\n"
+                    + (marked.size() == 1
+                            ? "Nice! I've marked this task as done:\n"
+                            : "Nice! I've marked these " + marked.size() + " tasks as done:\n")
+                    + formatBulk(marked)
                     + LINE;
         } catch (IllegalArgumentException e) {
             return formatError(e.getMessage());
@@ -159,17 +715,20 @@ public class Peggy {
         }
     }
 
-    private String handleUnmark(String input) {
+    private String handleUnmark(ParsedCommand cmd) {
         try {
-            int idx = Parser.parseIndex(input, tasks.size(), "unmark");
-            assert idx >= 0 && idx < tasks.size() : "Parser returned out-of-range index: " + idx;
-            Task t = tasks.get(idx);
-            t.markAsNotDone();
-            saveQuietly();
+            int[] indexes = Parser.parseIndexes(cmd, tasks, "unmark");
+            metrics.lap(Metrics.Phase.PARSE);
+            if (indexes.length == 0) {
+                return formatNone();
+            }
+            List<Task> unmarked = markAll(indexes, false);
 
             return LINE + "\n"
-                    + "OK, I've marked this task as not done yet:\n"
-                    + "  " + t + "\n"
+                    + (unmarked.size() == 1
+                            ? "OK, I've marked this task as not done yet:\n"
+                            : "OK, I've marked these " + unmarked.size() + " tasks as not done yet:\n")
+                    + formatBulk(unmarked)
                     + LINE;
         } catch (IllegalArgumentException e) {
             return formatError(e.getMessage());
@@ -178,16 +737,20 @@ public class Peggy {
         }
     }
 
-    private String handleDelete(String input) {
+    private String handleDelete(ParsedCommand cmd) {
         try {
-            int idx = Parser.parseIndex(input, tasks.size(), "delete");
-            assert idx >= 0 && idx < tasks.size() : "Parser returned out-of-range index: " + idx;
-            Task t = tasks.remove(idx);
-            saveQuietly();
+            int[] indexes = Parser.parseIndexes(cmd, tasks, "delete");
+            metrics.lap(Metrics.Phase.PARSE);
+            if (indexes.length == 0) {
+                return formatNone();
+            }
+            List<Task> removed = deleteAll(indexes);
 
             return LINE + "\n"
-                    + "Noted. I've removed this task:\n"
-                    + "  " + t + "\n"
+                    + (removed.size() == 1
+                            ? "Noted. I've removed this task:\n"
+                            : "Noted. I've removed these " + removed.size() + " tasks:\n")
+                    + formatBulk(removed)
                     + "Now you have " + tasks.size() + " tasks in the list.\n"
                     + LINE;
         } catch (IllegalArgumentException e) {
@@ -197,12 +760,55 @@ public class Peggy {
         }
     }
 
-    private String handleTodo(String input) {
+    private List<Task> markAll(int[] indexes, boolean isDone) {
+        List<Task> marked = new ArrayList<>(indexes.length);
+        for (int idx : indexes) {
+            marked.add(isDone ? tasks.markAsDone(idx) : tasks.markAsNotDone(idx));
+        }
+        persistQuietly(Journal.markRecord(indexes, isDone));
+        return marked;
+    }
+
+    private List<Task> deleteAll(int[] indexes) {
+        List<Task> removed = indexes.length == 1
+                ? List.of(tasks.remove(indexes[0]))
+                : tasks.removeAll(indexes);
+        persistQuietly(Journal.deleteRecord(indexes));
+        return removed;
+    }
+
+    private void addTask(Task t) {
+        tasks.add(t);
+        persistQuietly(Journal.addRecord(t));
+    }
+
+    // the first few tasks of a bulk change, one per line
+    private String formatBulk(List<Task> changed) {
+        startRendering();
+        StringBuilder sb = new StringBuilder();
+        int shown = Math.min(changed.size(), BULK_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            sb.append("  ").append(changed.get(i)).append("\n");
+        }
+        if (changed.size() > shown) {
+            sb.append("  ...and ").append(changed.size() - shown).append(" more\n");
+        }
+        return sb.toString();
+    }
+
+    private String formatNone() {
+        startRendering();
+        return LINE + "\n"
+                + "No tasks matched, so nothing changed.\n"
+                + LINE;
+    }
+
+    private String handleTodo(ParsedCommand cmd) {
         try {
-            String desc = Parser.parseTodoDesc(input);
+            String desc = Parser.parseTodoDesc(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
             Task t = new ToDo(desc);
-            tasks.add(t);
-            saveQuietly();
+            addTask(t);
 
             return formatAdded(t);
         } catch (IllegalArgumentException e) {
@@ -210,13 +816,13 @@ public class Peggy {
         }
     }
 
-    private String handleDeadline(String input) {
+    private String handleDeadline(ParsedCommand cmd) {
         try {
-            String[] dl = Parser.parseDeadline(input);
+            String[] dl = Parser.parseDeadline(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
             assert dl.length == 2 : "Deadline parse should return [desc, by]";
             Task t = new Deadline(dl[0], dl[1]);
-            tasks.add(t);
-            saveQuietly();
+            addTask(t);
 
             return formatAdded(t);
         } catch (IllegalArgumentException e) {
@@ -224,13 +830,13 @@ public class Peggy {
         }
     }
 
-    private String handleEvent(String input) {
+    private String handleEvent(ParsedCommand cmd) {
         try {
-            String[] ev = Parser.parseEvent(input);
+            String[] ev = Parser.parseEvent(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
             assert ev.length == 3 : "Event parse should return [desc, from, to]";
             Task t = new Event(ev[0], ev[1], ev[2]);
-            tasks.add(t);
-            saveQuietly();
+            addTask(t);
 
             return formatAdded(t);
         } catch (IllegalArgumentException e) {
@@ -238,29 +844,73 @@ public class Peggy {
         }
     }
 
-    private String handleFind(String input) {
+    private String handleFind(ParsedCommand cmd) {
         try {
-            String keyword = Parser.parseFindKeyword(input);
-            TaskList matches = tasks.find(keyword);
-
-            StringBuilder sb = new StringBuilder();
-            sb.append(LINE).append("\n");
-            sb.append("Here are the matching tasks in your list:\n");
-            if (matches.isEmpty()) {
-                sb.append("(none)\n");
-            } else {
-                for (int i = 0; i < matches.size(); i++) {
-                    sb.append(i + 1).append(". ").append(matches.get(i)).append("\n");
-                }
-            }
-            sb.append(LINE);
-            return sb.toString();
+            String keyword = Parser.parseFindKeyword(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
+            boolean isFuzzy = keyword.startsWith("~") && keyword.length() > 1;
+            TaskList matches = isFuzzy
+                    ? tasks.fuzzyFind(keyword.substring(1).trim(), FUZZY_MATCHES)
+                    : tasks.find(keyword);
+            return formatMatches(isFuzzy
+                    ? "Here are the closest matches in your list:"
+                    : "Here are the matching tasks in your list:", matches);
         } catch (IllegalArgumentException e) {
             return formatError(e.getMessage());
         }
     }
 
+    private String handleSchedule(ParsedCommand cmd) {
+        try {
+            LocalDate day = Parser.parseSchedule(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
+            TaskList matches = tasks.between(day.atStartOfDay(), day.atTime(LocalTime.MAX));
+            return formatMatches("Here is your schedule for " + Parser.formatDate(day) + ":", matches);
+        } catch (IllegalArgumentException e) {
+            return formatError(e.getMessage());
+        }
+    }
+
+    private String handleBetween(ParsedCommand cmd) {
+        try {
+            LocalDateTime[] range = Parser.parseBetween(cmd);
+            metrics.lap(Metrics.Phase.PARSE);
+            TaskList matches = tasks.between(range[0], range[1]);
+            return formatMatches("Here are the tasks between " + Parser.formatDateTime(range[0])
+                    + " and " + Parser.formatDateTime(range[1]) + ":", matches);
+        } catch (IllegalArgumentException e) {
+            return formatError(e.getMessage());
+        }
+    }
+
+    private String handleUpcoming(ParsedCommand cmd) {
+        try {
+            int k = Parser.parseUpcomingCount(cmd, UPCOMING_DEFAULT);
+            metrics.lap(Metrics.Phase.PARSE);
+            return formatMatches("Here is what's coming up next:", tasks.upcoming(LocalDateTime.now(), k));
+        } catch (IllegalArgumentException e) {
+            return formatError(e.getMessage());
+        }
+    }
+
+    private String formatMatches(String header, TaskList matches) {
+        startRendering();
+        StringBuilder sb = new StringBuilder();
+        sb.append(LINE).append("\n");
+        sb.append(header).append("\n");
+        if (matches.isEmpty()) {
+            sb.append("(none)\n");
+        } else {
+            for (int i = 0; i < matches.size(); i++) {
+                sb.append(i + 1).append(". ").append(matches.get(i)).append("\n");
+            }
+        }
+        sb.append(LINE);
+        return sb.toString();
+    }
+
     private String formatAdded(Task t) {
+        startRendering();
         return LINE + "\n"
                 + "Got it. I've added this task:\n"
                 + "  " + t + "\n"
@@ -269,14 +919,96 @@ public class Peggy {
     }
 
     private String formatError(String msg) {
+        startRendering();
+        if (heldRecords != null) {
+            lastError = msg;
+        }
         return LINE + "\n" + msg + "\n" + LINE;
     }
 
-    private void saveQuietly() {
+    /**
+     * Writes any pending changes to disk and stops background persistence.
+     */
+    public void close() {
+        try {
+            if (mapped != null) {
+                try {
+                    writeBack();
+                } finally {
+                    mapped.close();
+                }
+            } else {
+                writer.close();
+            }
+        } catch (Exception e) {
+            // nothing more we can do on shutdown
+        }
+    }
+
+    // saves the mapped tasks to the save file, which any backend can load, unless nothing changed since it
+    // was; if this fails, the mapped file stays unsaved and the next start without the mapped backend retries
+    private void writeBack() throws IOException {
+        lock.writeLock().lock();
         try {
-            storage.save(tasks.asList());
+            if (!mapped.isSaved()) {
+                saveFile.save(mapped);
+                mapped.setSaved(true);
+            }
+            saveFile.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void persistQuietly(String record) {
+        if (heldRecords != null) {
+            heldRecords.add(record); // saved when the script ends
+            return;
+        }
+        metrics.lap(Metrics.Phase.EXECUTE);
+        try {
+            if (mapped != null) {
+                if (policy.isEveryCommand()) {
+                    mapped.force(); // the change itself is already in the mapping
+                }
+                return;
+            }
+            writer.submit(record);
+            if (writer.isCompactionDue()) {
+                writer.submitSnapshot(tasks.snapshot());
+            }
         } catch (Exception e) {
-            // In GUI, just show an error response
+            metrics.saveFailed(e); // shown by 'stats'
+        } finally {
+            metrics.lap(Metrics.Phase.PERSIST);
         }
     }
+
+    private void flushQuietly() {
+        metrics.lap(Metrics.Phase.EXECUTE);
+        try {
+            if (mapped != null) {
+                mapped.force();
+            } else {
+                writer.flush();
+            }
+        } catch (Exception e) {
+            metrics.saveFailed(e); // shown by 'stats'
+        } finally {
+            metrics.lap(Metrics.Phase.PERSIST);
+        }
+    }
+
+    // charges the work so far to executing the command; the rest, until it ends, is rendering
+    private void startRendering() {
+        metrics.lap(Metrics.Phase.EXECUTE);
+    }
+
+    /**
+     * Per-client state: where the client's next {@code more} continues its listing.
+     */
+    public static class Session {
+        private int moreFrom = -1; // index the next 'more' lists from, or -1
+        private int morePageSize;
+    }
 }
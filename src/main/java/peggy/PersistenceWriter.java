@@ -0,0 +1,340 @@
+package peggy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import peggy.task.Task;
+
+/**
+ * Background thread that persists task list changes so commands do not wait on the disk.
+ * <p>
+ *     Commands {@link #submit(String)} journal records; the writer drains everything queued since its
+ *     last pass and appends it to the journal in one write (group commit). When the journal grows
+ *     past its threshold, the next command hands over a snapshot of the list via
+ *     {@link #submitSnapshot(List)} and the writer compacts. When records are fsynced is decided by
+ *     the {@link DurabilityPolicy}.
+ * </p>
+ * <p>
+ *     A batch that fails to write or to be forced is retried whole, after the journal is cut back to where it
+ *     was before the batch, so records that reached it before the failure are not recorded twice.
+ * </p>
+ */
+public class PersistenceWriter {
+    private static final long RETRY_MILLIS = 1000;
+
+    private final Storage storage;
+    private final DurabilityPolicy policy;
+    private final Thread thread;
+
+    // Guarded by this. Pending entries are journal records (String) or snapshots (List<Task>).
+    private List<Object> pending = new ArrayList<>();
+    private long submitted;
+    private long written;
+    private long forced;
+    private long forceRequested;
+    private boolean isCompactionDue;
+    private boolean isClosed;
+    private IOException failure;
+    private long bytesWritten;
+    private long writes;
+    private long failedWrites;
+    private String lastFailure;
+    private long journalMark = -1; // journal size before the batch until it is forced; only used by the thread
+
+    /**
+     * Creates a writer for the given (journaled) storage and starts its background thread.
+     *
+     * @param storage Storage that has already been loaded.
+     * @param policy When to force written records to disk.
+     */
+    public PersistenceWriter(Storage storage, DurabilityPolicy policy) {
+        this.storage = storage;
+        this.policy = policy;
+        this.thread = new Thread(this::run, "peggy-persistence");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues one journal record. Under {@link DurabilityPolicy#everyCommand()} this waits until the
+     * record is on disk; otherwise it returns immediately.
+     *
+     * @param record Journal record describing a mutation.
+     * @throws IOException If the record could not be made durable (every-command policy only).
+     */
+    public void submit(String record) throws IOException {
+        long seq;
+        synchronized (this) {
+            pending.add(record);
+            seq = ++submitted;
+            notifyAll();
+        }
+        if (policy.isEveryCommand()) {
+            awaitForced(seq);
+        }
+    }
+
+    /**
+     * Queues several journal records to be written together, e.g. the changes of one script. Waits like
+     * {@link #submit(String)}.
+     *
+     * @param records Journal records, in the order they were applied.
+     * @throws IOException If the records could not be made durable (every-command policy only).
+     */
+    public void submitAll(List<String> records) throws IOException {
+        long seq;
+        synchronized (this) {
+            pending.addAll(records);
+            submitted += records.size();
+            seq = submitted;
+            notifyAll();
+        }
+        if (policy.isEveryCommand()) {
+            awaitForced(seq);
+        }
+    }
+
+    /**
+     * Queues a snapshot of the whole list, replacing the journal once written.
+     *
+     * @param tasks Copy of the task list, taken after the last submitted record was applied.
+     */
+    public synchronized void submitSnapshot(List<Task> tasks) {
+        pending.add(tasks);
+        submitted++;
+        isCompactionDue = false;
+        notifyAll();
+    }
+
+    /**
+     * Returns whether the journal has grown enough that the caller should {@link #submitSnapshot(List)}.
+     */
+    public synchronized boolean isCompactionDue() {
+        return isCompactionDue;
+    }
+
+    /**
+     * Returns the number of bytes written to the journal and snapshots so far.
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of batches written so far.
+     */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of attempts to write a batch that failed; a failed batch is retried.
+     */
+    public synchronized long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /**
+     * Returns the message of the last failed write, or null if none has failed.
+     */
+    public synchronized String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Blocks until everything submitted so far has been written and forced to disk.
+     *
+     * @throws IOException If the pending changes could not be written.
+     */
+    public void flush() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = submitted;
+        }
+        awaitForced(seq);
+    }
+
+    /**
+     * Flushes pending changes, then stops the background thread and closes the storage.
+     *
+     * @throws IOException If the pending changes could not be written.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                isClosed = true;
+                notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            storage.close();
+        }
+    }
+
+    // waits until seq is forced, failing if a write fails meanwhile; failures before the call are not reported
+    private synchronized void awaitForced(long seq) throws IOException {
+        if (forceRequested < seq) {
+            forceRequested = seq;
+            notifyAll();
+        }
+        long failedBefore = failedWrites;
+        while (forced < seq) {
+            if (failedWrites > failedBefore) {
+                throw failure;
+            }
+            if (isClosed) {
+                throw new IOException("Persistence writer is closed.");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing", e);
+            }
+        }
+    }
+
+    private void run() {
+        long lastForce = System.currentTimeMillis();
+        while (true) {
+            List<Object> batch;
+            long upTo;
+            boolean shouldForce;
+            synchronized (this) {
+                try {
+                    while (!isClosed && !hasWork(lastForce)) {
+                        wait(waitMillis(lastForce));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (isClosed && pending.isEmpty() && forced == written) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                upTo = submitted;
+                shouldForce = policy.isEveryCommand() || forceRequested > forced
+                        || (!policy.isOnExit()
+                                && System.currentTimeMillis() - lastForce >= policy.getIntervalMillis());
+            }
+
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            long[] bytes = {0};
+            try {
+                boolean isDue = write(batch, bytes);
+                if (shouldForce) {
+                    storage.force();
+                    lastForce = System.currentTimeMillis();
+                }
+                journalMark = -1; // only now, as a batch whose force failed is retried like a failed write
+                commit(event, batch, bytes[0], null);
+                synchronized (this) {
+                    bytesWritten += bytes[0];
+                    writes++;
+                    written = upTo;
+                    if (shouldForce) {
+                        forced = upTo;
+                    }
+                    isCompactionDue |= isDue;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                commit(event, batch, bytes[0], String.valueOf(e.getMessage()));
+                synchronized (this) {
+                    bytesWritten += bytes[0];
+                    failedWrites++;
+                    lastFailure = e.getMessage();
+                    batch.addAll(pending); // keep the failed batch in front and retry later
+                    pending = batch;
+                    failure = e;
+                    notifyAll();
+                    if (isClosed) {
+                        return; // close() already reported the failure
+                    }
+                    try {
+                        wait(RETRY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a batch in order. A snapshot supersedes every record queued before it. If a previous attempt at
+     * the batch failed, what it appended to the journal is dropped first.
+     *
+     * @param bytes Receives the number of bytes written, in its first element, even if writing fails.
+     * @return Whether the journal has grown past the compaction threshold.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean write(List<Object> batch, long[] bytes) throws IOException {
+        List<String> records = new ArrayList<>();
+        boolean isSaved = false;
+        for (Object entry : batch) {
+            if (entry instanceof String) {
+                records.add((String) entry);
+            } else {
+                records.clear();
+                bytes[0] += storage.save((List<Task>) entry);
+                isSaved = true;
+            }
+        }
+        if (!records.isEmpty()) {
+            if (isSaved || journalMark < 0) {
+                journalMark = storage.getJournalSize(); // a saved snapshot starts a new journal
+            } else {
+                storage.truncateJournal(journalMark);
+            }
+            bytes[0] += storage.append(records);
+        }
+        return storage.isCompactionDue();
+    }
+
+    private static void commit(SaveEvent event, List<Object> batch, long bytes, String failure) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        int records = 0;
+        boolean isSnapshot = false;
+        for (Object entry : batch) {
+            if (entry instanceof String) {
+                records++;
+            } else {
+                isSnapshot = true;
+            }
+        }
+        event.set(records, isSnapshot, bytes, failure);
+        event.commit();
+    }
+
+    private boolean hasWork(long lastForce) {
+        if (forceRequested > forced) {
+            return true;
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        if (policy.isEveryCommand() || policy.isOnExit()) {
+            return true;
+        }
+        return System.currentTimeMillis() - lastForce >= policy.getIntervalMillis();
+    }
+
+    private long waitMillis(long lastForce) {
+        if (policy.isEveryCommand() || policy.isOnExit()) {
+            return 0; // until notified
+        }
+        long left = policy.getIntervalMillis() - (System.currentTimeMillis() - lastForce);
+        return Math.max(1, left);
+    }
+}
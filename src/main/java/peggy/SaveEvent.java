@@ -0,0 +1,39 @@
+package peggy;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One write by the {@link PersistenceWriter}: journal records, a snapshot, or both, as a JFR event.
+ */
+@Name("peggy.Save")
+@Label("Save")
+@Category("Peggy")
+@Description("Journal records or a snapshot written by the persistence thread")
+@StackTrace(false)
+class SaveEvent extends Event {
+    @Label("Records")
+    private int records;
+
+    @Label("Snapshot")
+    private boolean isSnapshot;
+
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytes;
+
+    @Label("Failure")
+    private String failure;
+
+    void set(int records, boolean isSnapshot, long bytes, String failure) {
+        this.records = records;
+        this.isSnapshot = isSnapshot;
+        this.bytes = bytes;
+        this.failure = failure;
+    }
+}
@@ -0,0 +1,156 @@
+package peggy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares one {@link Peggy} with several local clients over TCP on the loopback interface.
+ * <p>
+ *     Clients send commands one per line (UTF-8), exactly as typed in the chat. Every response, starting
+ *     with the welcome message on connect, ends with an empty line, and responses never contain empty lines
+ *     themselves. {@code bye} closes the connection but leaves the server running. Each connection has its
+ *     own thread and {@link Peggy.Session}, so one client's {@code more} is not disturbed by another's list.
+ * </p>
+ */
+public class Server implements Closeable {
+    public static final int DEFAULT_PORT = 4242;
+
+    private final Peggy peggy;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param peggy Peggy to share.
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public Server(Peggy peggy, int port) throws IOException {
+        this.peggy = peggy;
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        AtomicInteger count = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "peggy-client-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::acceptLoop, "peggy-server");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Blocks until the server is closed.
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting clients and disconnects the connected ones. Does not close Peggy.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        connections.shutdownNow();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            clients.add(client);
+            try {
+                connections.execute(() -> serve(client));
+            } catch (RejectedExecutionException e) {
+                clients.remove(client); // closing
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // already closing
+                }
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        Peggy.Session session = new Peggy.Session();
+        StringBuilder response = new StringBuilder();
+        try (client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            send(peggy.getWelcomeMessage(), out);
+            String line;
+            while ((line = in.readLine()) != null) {
+                // built in memory so Peggy's lock is never held while the client reads slowly
+                response.setLength(0);
+                peggy.respond(session, line, response);
+                send(response, out);
+                if (peggy.isExitCommand(line)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    // the response without empty lines, then the empty line that ends it
+    private static void send(CharSequence response, Writer out) throws IOException {
+        boolean isLineStart = true;
+        for (int i = 0; i < response.length(); i++) {
+            char c = response.charAt(i);
+            if (c == '\n' && isLineStart) {
+                continue;
+            }
+            out.write(c);
+            isLineStart = c == '\n';
+        }
+        if (!isLineStart) {
+            out.write('\n');
+        }
+        out.write('\n');
+        out.flush();
+    }
+}
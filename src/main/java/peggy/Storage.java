@@ -1,10 +1,16 @@
 package peggy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import peggy.task.*;
 /**
@@ -14,97 +20,332 @@ import peggy.task.*;
  *     T | 0 | read book
  *     D | 1 | return book | 2019-12-02T18:00
  *     E | 0 | meeting | 2019-12-03T10:00 | 2019-12-03T12:00
+ *     Snapshots can also be kept in the compact {@link BinaryCodec} format; the format of an existing
+ *     file is detected on load and kept when saving.
  * </p>
  */
 public class Storage {
+    /**
+     * On-disk snapshot formats.
+     */
+    public enum Format {
+        TEXT, BINARY
+    }
+
+    /** Journal size, in bytes, above which {@link #isCompactionDue()} asks for a fresh snapshot. */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1L << 20;
+
+    private static final String GENERATION_PREFIX = "# generation ";
+    private static final byte[] GENERATION_BYTES = GENERATION_PREFIX.getBytes(StandardCharsets.UTF_8);
+
     private final Path filePath;
+    private final Journal journal;
+    private final long compactionThreshold;
+    private Format format = Format.TEXT;
+    private long generation;
     /**
      * Creates a storage object that reads/writes tasks from/to a relative file path.
      *
      * @param relativePath Relative path to the storage file (e.g., "data/peggy.txt").
      */
     public Storage(String relativePath) {
+        this(relativePath, false, DEFAULT_COMPACTION_THRESHOLD);
+    }
+    /**
+     * Creates a storage object that can optionally record mutations in a journal next to the snapshot.
+     * <p>
+     *     In journal mode, each mutation is appended to {@code <file>.journal} via {@link #append(String)}
+     *     instead of rewriting the whole file, and {@link #save(List)} compacts the journal into the snapshot.
+     * </p>
+     *
+     * @param relativePath Relative path to the storage file (e.g., "data/peggy.txt").
+     * @param isJournaled Whether mutations are journaled.
+     * @param compactionThreshold Journal size in bytes after which a compaction is due.
+     */
+    public Storage(String relativePath, boolean isJournaled, long compactionThreshold) {
         this.filePath = Paths.get(relativePath);
+        this.journal = isJournaled
+                ? new Journal(filePath.resolveSibling(filePath.getFileName() + ".journal"))
+                : null;
+        this.compactionThreshold = compactionThreshold;
     }
     /**
-     * Loads tasks from the storage file.
+     * Loads tasks from the storage file, replaying any journaled mutations on top of it.
      *
      * @return An {@link ArrayList} of tasks loaded from disk.
      * @throws IOException If an I/O error occurs while reading.
      */
     public ArrayList<Task> load() throws IOException {
         ArrayList<Task> tasks = new ArrayList<>();
-        if (!Files.exists(filePath)) {
-            return tasks;
+        generation = 0;
+        if (Files.exists(filePath) && BinaryCodec.isBinary(filePath)) {
+            format = Format.BINARY;
+            generation = BinaryCodec.read(filePath, tasks);
+        } else if (Files.exists(filePath) && ParallelLoader.isWorthwhile(Files.size(filePath))) {
+            generation = readGeneration(filePath);
+            ParallelLoader.load(filePath, tasks);
+        } else if (Files.exists(filePath)) {
+            TaskFileReader reader = new TaskFileReader();
+            TaskFileReader.forEachLine(filePath, true, (buf, start, end) -> {
+                if (generation == 0 && startsWith(buf, start, end, GENERATION_BYTES)) {
+                    generation = parseGeneration(new String(buf, start, end - start, StandardCharsets.UTF_8));
+                    return;
+                }
+                Task t = reader.parse(buf, start, end);
+                if (t != null) {
+                    tasks.add(t);
+                }
+            });
         }
 
-        List<String> lines = Files.readAllLines(filePath);
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
-            }
+        if (journal != null) {
+            journal.replay(tasks, generation);
+        }
+        return tasks;
+    }
+    /**
+     * Loads tasks like {@link #load()}, but leaves each task in the text file unparsed until it is first
+     * read ({@link LazyTaskStore}); the load only reads the file and notes where each task's line starts.
+     * A binary file is loaded in full.
+     *
+     * @return The tasks, with any journaled mutations replayed.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    LazyTaskStore loadLazily() throws IOException {
+        if (!Files.exists(filePath) || BinaryCodec.isBinary(filePath)) {
+            return new LazyTaskStore(load());
+        }
 
-            String[] parts = line.split("\\s*\\|\\s*");
-            if (parts.length < 3) {
-                continue; // skip malformed
+        generation = 0;
+        byte[] text = Files.readAllBytes(filePath);
+        int[][] lineStarts = {new int[1024]};
+        byte[][] types = {new byte[1024]};
+        BitSet done = new BitSet();
+        int[] count = {0};
+        TaskFileReader reader = new TaskFileReader();
+        TaskFileReader.forEachLine(text, 0, text.length, (buf, start, end) -> {
+            if (generation == 0 && startsWith(buf, start, end, GENERATION_BYTES)) {
+                generation = parseGeneration(new String(buf, start, end - start, StandardCharsets.UTF_8));
+                return;
             }
-
-            String type = parts[0];
-            boolean done = "1".equals(parts[1]);
-
-            Task t;
-            switch (type) {
-                case "T":
-                    t = new ToDo(parts[2]);
-                    break;
-
-                case "D":
-                    if (parts.length < 4) continue;
-                    // parts[3] is yyyy-MM-dd (LocalDate.toString())
-                    t = new Deadline(parts[2], parts[3]);
-                    break;
-
-                case "E":
-                    if (parts.length < 5) continue;
-                    // parts[3], parts[4] are likely ISO like 2019-12-02T18:00 (LocalDateTime.toString())
-                    t = new Event(parts[2], parts[3], parts[4]);
-                    break;
-
-                default:
-                    continue; // unknown type
+            int kind = reader.peekValid(buf, start, end);
+            if (kind < 0) {
+                return;
             }
-
-            if (done) {
-                t.markAsDone();
+            int n = count[0]++;
+            if (n == lineStarts[0].length) {
+                lineStarts[0] = Arrays.copyOf(lineStarts[0], n * 2);
+                types[0] = Arrays.copyOf(types[0], n * 2);
             }
-            tasks.add(t);
-        }
+            lineStarts[0][n] = start;
+            types[0][n] = (byte) (kind & ~TaskFileReader.DONE);
+            if ((kind & TaskFileReader.DONE) != 0) {
+                done.set(n);
+            }
+        });
 
+        LazyTaskStore tasks = new LazyTaskStore(text, lineStarts[0], types[0], done, count[0]);
+        if (journal != null) {
+            journal.replay(tasks, generation);
+        }
         return tasks;
     }
     /**
      * Saves the given tasks into the storage file, overwriting existing content.
+     * <p>
+     *     In journal mode this is the compaction step: the snapshot is replaced atomically and
+     *     the journal is reset so that it applies to the new snapshot.
+     * </p>
      *
      * @param tasks List of tasks to save.
+     * @return Number of bytes written.
      * @throws IOException If an I/O error occurs while writing.
      */
-    public void save(List<Task> tasks) throws IOException {
+    public long save(List<Task> tasks) throws IOException {
+        if (filePath.getParent() != null) {
+            Files.createDirectories(filePath.getParent());
+        }
+
+        if (journal == null) {
+            return write(filePath, tasks, format, 0);
+        }
+
+        Path tmp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        long bytes = write(tmp, tasks, format, generation + 1);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true); // the snapshot must be durable before the journal is dropped
+        }
+        Files.move(tmp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        return bytes + journal.reset(generation);
+    }
+    /**
+     * Returns the snapshot format used by {@link #save(List)}.
+     */
+    public Format getFormat() {
+        return format;
+    }
+    /**
+     * Sets the snapshot format used by subsequent saves.
+     *
+     * @param format Snapshot format.
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+    /**
+     * Converts a save file (of either format) into the given format, e.g. to import or export text.
+     * Journaled changes next to the source are included; converting a file onto itself compacts it.
+     *
+     * @param source Path of the existing save file.
+     * @param target Path of the file to write.
+     * @param format Format of the written file.
+     * @return Number of tasks converted.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int convert(String source, String target, Format format) throws IOException {
+        Storage in = new Storage(source, true, DEFAULT_COMPACTION_THRESHOLD);
+        ArrayList<Task> tasks = in.load();
+        boolean isInPlace = in.filePath.toAbsolutePath().normalize()
+                .equals(Paths.get(target).toAbsolutePath().normalize());
+        Storage out = isInPlace ? in : new Storage(target);
+        out.setFormat(format);
+        out.save(tasks);
+        in.close();
+        return tasks.size();
+    }
+
+    // returns the size of the written file
+    private static long write(Path path, List<Task> tasks, Format format, long generation) throws IOException {
+        if (format == Format.BINARY) {
+            BinaryCodec.write(path, tasks, generation);
+            return Files.size(path);
+        }
+
         ArrayList<String> out = new ArrayList<>();
+        if (generation > 0) {
+            out.add(GENERATION_PREFIX + generation);
+        }
         for (Task task : tasks) {
             out.add(format(task));
         }
+        Files.write(path, out,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return Files.size(path);
+    }
+    /**
+     * Appends one mutation record (see {@link Journal}) to the journal.
+     *
+     * @param record Record describing the mutation.
+     * @return Number of bytes written.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public long append(String record) throws IOException {
+        return append(List.of(record));
+    }
+    /**
+     * Appends mutation records (see {@link Journal}) to the journal in one write.
+     *
+     * @param records Records describing the mutations, in order.
+     * @return Number of bytes written.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public long append(List<String> records) throws IOException {
+        assert journal != null : "append() needs a journaled storage";
+        return journal.append(records, generation);
+    }
+    /**
+     * Returns the size of the journal in bytes, e.g. to {@link #truncateJournal(long)} back to it.
+     */
+    long getJournalSize() throws IOException {
+        return journal == null ? 0 : journal.size();
+    }
+    /**
+     * Drops whatever was appended to the journal after it had the given size, e.g. part of a write that
+     * failed, so that retrying the write does not record the same mutations twice.
+     *
+     * @param size A size the journal had earlier, from {@link #getJournalSize()}.
+     * @throws IOException If an I/O error occurs while truncating.
+     */
+    void truncateJournal(long size) throws IOException {
+        if (journal != null) {
+            journal.truncate(size);
+        }
+    }
+    /**
+     * Forces journaled records to the storage device.
+     *
+     * @throws IOException If an I/O error occurs while syncing.
+     */
+    public void force() throws IOException {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+    /**
+     * Releases the journal file handle.
+     *
+     * @throws IOException If an I/O error occurs while closing.
+     */
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    /**
+     * Returns whether the journal has grown past the compaction threshold,
+     * i.e. whether the caller should {@link #save(List)} a fresh snapshot.
+     */
+    public boolean isCompactionDue() throws IOException {
+        return journal != null && journal.size() > compactionThreshold;
+    }
 
-        if (filePath.getParent() != null) {
-            Files.createDirectories(filePath.getParent());
+    /**
+     * Parses one line of the snapshot format.
+     *
+     * @return The task, or null if the line is blank, a comment or malformed.
+     */
+    static Task parseLine(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new TaskFileReader().parse(bytes, 0, bytes.length);
+    }
+
+    private static boolean startsWith(byte[] buf, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[start + i] != prefix[i]) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        Files.write(filePath, out,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING);
+    private static long readGeneration(Path path) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(path)) {
+            head = in.readNBytes(64);
+        }
+        int end = 0;
+        while (end < head.length && head[end] != '\n' && head[end] != '\r') {
+            end++;
+        }
+        return startsWith(head, 0, end, GENERATION_BYTES)
+                ? parseGeneration(new String(head, 0, end, StandardCharsets.UTF_8))
+                : 0;
+    }
+
+    private static long parseGeneration(String line) {
+        try {
+            return Long.parseLong(line.trim().substring(GENERATION_PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
-    private String format(Task task) {
+    static String format(Task task) {
         String done = task.isDone() ? "1" : "0";
 
         if (task instanceof ToDo) {
@@ -0,0 +1,292 @@
+package peggy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+/**
+ * Streams task files through a {@link FileChannel} and parses lines in place.
+ * <p>
+ *     Lines are handed out as byte ranges of a reused buffer and fields are found by scanning for
+ *     {@code |} directly, so loading allocates no line strings or split arrays: only the description
+ *     and date strings of each task are decoded. Parsing follows the old
+ *     {@code line.trim().split("\\s*\\|\\s*")} rules exactly, including which lines are skipped; a line
+ *     whose date/time does not parse is skipped too rather than failing the whole load.
+ * </p>
+ */
+class TaskFileReader {
+    /** Added to the type that {@link #peek(byte[], int, int)} returns when the task is done. */
+    static final int DONE = 0x100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELDS = 5;
+
+    /**
+     * Receives one line as the range [start, end) of a buffer that is reused after the call returns.
+     */
+    interface LineHandler {
+        void line(byte[] buf, int start, int end) throws IOException;
+    }
+
+    // start/end offsets of the first MAX_FIELDS fields of the line being parsed
+    private final int[] bounds = new int[MAX_FIELDS * 2];
+    private final ByteChars dateBytes = new ByteChars(); // reused by peekValid
+
+    /**
+     * Calls the handler for every line of the file. Both {@code \n} and {@code \r} end a line.
+     *
+     * @param path File to read.
+     * @param includeUnterminated Whether a last line without a line terminator is passed on.
+     * @param handler Receiver of each line.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    static void forEachLine(Path path, boolean includeUnterminated, LineHandler handler) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            ByteBuffer bb = ByteBuffer.wrap(buf);
+            int lineStart = 0;
+            int scanned = 0;
+            while (true) {
+                int n = ch.read(bb);
+                int limit = bb.position();
+                for (int i = scanned; i < limit; i++) {
+                    byte c = buf[i];
+                    if (c == '\n' || c == '\r') {
+                        handler.line(buf, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                scanned = limit;
+
+                if (n < 0) {
+                    if (includeUnterminated && lineStart < limit) {
+                        handler.line(buf, lineStart, limit);
+                    }
+                    return;
+                }
+
+                if (lineStart > 0) {
+                    // move the partial line to the front and read the rest behind it
+                    System.arraycopy(buf, lineStart, buf, 0, limit - lineStart);
+                    scanned -= lineStart;
+                    bb.position(limit - lineStart);
+                    lineStart = 0;
+                } else if (limit == buf.length) {
+                    // a single line longer than the buffer
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    bb = ByteBuffer.wrap(buf);
+                    bb.position(limit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the handler for every line in the range [start, end) of a buffer, including a last
+     * line without a line terminator.
+     */
+    static void forEachLine(byte[] buf, int start, int end, LineHandler handler) throws IOException {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            byte c = buf[i];
+            if (c == '\n' || c == '\r') {
+                handler.line(buf, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            handler.line(buf, lineStart, end);
+        }
+    }
+
+    /**
+     * Parses one line of the snapshot format.
+     *
+     * @return The task, or null if the line is blank, a comment, malformed or has a date/time that does
+     *     not parse.
+     */
+    Task parse(byte[] b, int start, int end) {
+        int kind = peek(b, start, end);
+        if (kind < 0) {
+            return null;
+        }
+
+        Task t;
+        try {
+            switch (kind & ~DONE) {
+                case 'T':
+                    t = new ToDo(field(b, 2));
+                    break;
+                case 'D':
+                    t = new Deadline(field(b, 2), field(b, 3));
+                    break;
+                default:
+                    t = new Event(field(b, 2), field(b, 3), field(b, 4));
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            return null; // skip invalid date
+        }
+        if ((kind & DONE) != 0) {
+            t.markAsDone();
+        }
+        return t;
+    }
+
+    /**
+     * Checks one line of the snapshot format as {@link #parse(byte[], int, int)} would, without decoding
+     * any field, e.g. to note where a task is and read it later.
+     *
+     * @return The type letter ({@code 'T'}, {@code 'D'} or {@code 'E'}) plus {@link #DONE} if the task is
+     *     done, or -1 if the line is blank, a comment or malformed.
+     */
+    int peek(byte[] b, int start, int end) {
+        while (start < end && (b[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (b[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        if (start == end || b[start] == '#') {
+            return -1;
+        }
+
+        int count = splitFields(b, start, end);
+        if (count < 3) {
+            return -1; // skip malformed
+        }
+
+        int type;
+        if (fieldIs(b, 0, 'T')) {
+            type = 'T';
+        } else if (fieldIs(b, 0, 'D') && count >= 4) {
+            type = 'D';
+        } else if (fieldIs(b, 0, 'E') && count >= 5) {
+            type = 'E';
+        } else {
+            return -1; // unknown type or missing dates
+        }
+        return fieldIs(b, 1, '1') ? type | DONE : type;
+    }
+
+    /**
+     * Checks a line like {@link #peek(byte[], int, int)}, also checking the dates of a deadline or event, so
+     * that exactly the lines {@link #parse(byte[], int, int)} would skip are rejected. Dates in the shapes
+     * {@link Parser#lexDateTime(CharSequence)} knows, such as those this file is written with, are checked in
+     * place without decoding them; only others are parsed.
+     */
+    int peekValid(byte[] b, int start, int end) {
+        int kind = peek(b, start, end);
+        int type = kind & ~DONE;
+        if ((type == 'D' || type == 'E') && !isDateTime(b, 3) || type == 'E' && !isDateTime(b, 4)) {
+            return -1; // skip invalid date
+        }
+        return kind;
+    }
+
+    private boolean isDateTime(byte[] b, int field) {
+        dateBytes.wrap(b, bounds[field * 2], bounds[field * 2 + 1]);
+        if (Parser.isLexedDateTime(dateBytes)) {
+            return true;
+        }
+        try {
+            Parser.parseDateTime(field(b, field));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the bounds of the first fields and returns the field count as {@code String.split} would
+     * report it, i.e. without trailing empty fields.
+     */
+    private int splitFields(byte[] b, int start, int end) {
+        int count = 0;
+        int nonEmpty = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && b[i] != '|') {
+                continue;
+            }
+            int s = fieldStart;
+            int e = i;
+            while (s < e && isSpace(b[s])) {
+                s++;
+            }
+            while (e > s && isSpace(b[e - 1])) {
+                e--;
+            }
+            if (count < MAX_FIELDS) {
+                bounds[count * 2] = s;
+                bounds[count * 2 + 1] = e;
+            }
+            count++;
+            if (e > s) {
+                nonEmpty = count;
+            }
+            fieldStart = i + 1;
+        }
+        return nonEmpty;
+    }
+
+    private boolean fieldIs(byte[] b, int field, char c) {
+        int s = bounds[field * 2];
+        return bounds[field * 2 + 1] - s == 1 && b[s] == c;
+    }
+
+    private String field(byte[] b, int field) {
+        int s = bounds[field * 2];
+        return new String(b, s, bounds[field * 2 + 1] - s, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A field's bytes read as characters, one per byte, for {@link Parser#isLexedDateTime(CharSequence)}; the
+     * check only accepts ASCII text, which reads the same as its UTF-8 decoding.
+     */
+    private static final class ByteChars implements CharSequence {
+        private byte[] bytes;
+        private int start;
+        private int end;
+
+        void wrap(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[start + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    // the \s class of java.util.regex
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
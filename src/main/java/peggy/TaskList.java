@@ -1,21 +1,123 @@
 package peggy;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import peggy.task.*;
 
+/**
+ * The user's tasks in list order, with lazily built indexes for searching them.
+ * <p>
+ *     Queries may run on several threads at once, but never alongside a change; {@link Peggy} arranges
+ *     this with a read-write lock. An index is built by the first query that needs it, one thread at a time.
+ * </p>
+ */
 public class TaskList {
-    private final ArrayList<Task> tasks;
+    /**
+     * How the tasks are held in memory.
+     */
+    public enum Backend {
+        /** Task objects in a tree; any change is O(log n). The default. */
+        TREE,
+        /**
+         * Columns of primitives ({@link ColumnarTaskStore}): a fraction of the memory and garbage of
+         * {@link #TREE} for millions of tasks, at the cost of O(n) deletes.
+         */
+        COLUMNAR,
+        /**
+         * Fixed-size records in a memory-mapped file ({@link MappedTaskStore}), for lists larger than the heap;
+         * opening it reads nothing. Only {@link Peggy} creates such a list, as it needs a file; it writes the
+         * tasks back to the text save file on close.
+         */
+        MAPPED,
+        /**
+         * Task objects made from their lines of the text save file as they are first read
+         * ({@link LazyTaskStore}), so starting up only scans the file; deletes are O(n) as with {@link #COLUMNAR}.
+         * Only {@link Peggy} creates such a list, as it needs the file.
+         */
+        LAZY;
+
+        /**
+         * Parses a backend name such as {@code columnar}, ignoring case; null gives {@link #TREE}.
+         *
+         * @throws IllegalArgumentException If the name is not a backend.
+         */
+        public static Backend parse(String name) {
+            if (name == null) {
+                return TREE;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Unknown task store: " + name + " (use tree, columnar, mapped or lazy)");
+            }
+        }
+    }
+
+    private static final int REBUILD_FRACTION = 8; // bulk removals above 1/8 of the list drop the indexes
+
+    private final Backend backend;
+    // every task carries an id for the indexes; ids only grow, so they stay sorted in list order
+    private final TaskStore tasks;
+    private int nextId;
+    private TokenIndex tokenIndex; // built on the first find
+    private TrigramIndex trigramIndex; // built on the first fuzzy find
+    private IntervalIndex intervalIndex; // built on the first range query
+    private DueQueue dueQueue; // built on the first upcoming/overdue query
 
     public TaskList() {
-        this.tasks = new ArrayList<>();
+        this(new ArrayList<>());
     }
 
     public TaskList(ArrayList<Task> tasks) {
+        this(tasks, Backend.TREE);
+    }
+
+    /**
+     * Creates a list of the given tasks, held as the backend says.
+     */
+    public TaskList(List<Task> tasks, Backend backend) {
+        if (backend == Backend.MAPPED || backend == Backend.LAZY) {
+            throw new IllegalArgumentException("A " + backend.name().toLowerCase() + " task list needs a file.");
+        }
+        this.backend = backend;
+        this.tasks = backend == Backend.COLUMNAR ? new ColumnarTaskStore(tasks, 0) : new TaskTree(tasks, 0);
+        this.nextId = tasks.size();
+    }
+
+    /**
+     * Creates a list over a store opened from a file, e.g. a {@link MappedTaskStore}; the store's ids must
+     * ascend in list order.
+     */
+    TaskList(TaskStore tasks, Backend backend) {
+        this.backend = backend;
         this.tasks = tasks;
+        this.nextId = tasks.isEmpty() ? 0 : tasks.idAt(tasks.size() - 1) + 1;
+    }
+
+    public Backend getBackend() {
+        return backend;
     }
 
     public void add(Task t) {
-        tasks.add(t);
+        if (nextId == Integer.MAX_VALUE) {
+            renumber();
+        }
+        int id = nextId++;
+        tasks.insert(tasks.size(), id, t);
+        if (tokenIndex != null) {
+            tokenIndex.add(id, t.getDescription());
+        }
+        if (trigramIndex != null) {
+            trigramIndex.add(id, t.getDescription());
+        }
+        if (intervalIndex != null) {
+            intervalIndex.add(id, t);
+        }
+        if (dueQueue != null) {
+            dueQueue.add(id, t);
+        }
     }
 
     public Task get(int index) {
@@ -23,22 +125,136 @@ public class TaskList {
     }
 
     public Task remove(int index) {
-        return tasks.remove(index);
+        int id = tasks.idAt(index);
+        Task t = tasks.remove(index);
+        unindex(id, t);
+        return t;
     }
 
+    /**
+     * Removes the tasks at the given positions in one call: a few are removed one by one, many by
+     * rebuilding the tree in a single pass.
+     * <p>
+     *     Removing a large share of the list drops the lazy indexes instead of updating them entry by entry;
+     *     the next query that needs one rebuilds it.
+     * </p>
+     *
+     * @param indexes Positions in ascending order, without duplicates.
+     * @return The removed tasks, in list order.
+     */
+    public List<Task> removeAll(int[] indexes) {
+        List<Task> removed = new ArrayList<>(indexes.length);
+        if (indexes.length == 0) {
+            return removed;
+        }
+        boolean isRebuildCheaper = indexes.length > tasks.size() / REBUILD_FRACTION;
+        if (isRebuildCheaper) {
+            tokenIndex = null;
+            trigramIndex = null;
+            intervalIndex = null;
+            dueQueue = null;
+        }
+        tasks.removeAll(indexes, (index, id, t) -> {
+            removed.add(t);
+            unindex(id, t);
+        });
+        return removed;
+    }
+
+    /**
+     * Marks the task at the index as done. Use this rather than {@link Task#markAsDone()} so the
+     * upcoming/overdue queue stays in sync, and so the change is kept whatever the backend.
+     */
+    public Task markAsDone(int index) {
+        tasks.setDone(index, true);
+        Task t = tasks.get(index);
+        if (dueQueue != null) {
+            dueQueue.remove(tasks.idAt(index), t);
+        }
+        return t;
+    }
+
+    /**
+     * Marks the task at the index as not done; see {@link #markAsDone(int)}.
+     */
+    public Task markAsNotDone(int index) {
+        tasks.setDone(index, false);
+        Task t = tasks.get(index);
+        if (dueQueue != null) {
+            dueQueue.add(tasks.idAt(index), t);
+        }
+        return t;
+    }
+
+    /**
+     * Returns the tasks whose description contains the keyword, ignoring case, in list order.
+     * <p>
+     *     Resolved through the token index: a keyword without whitespace is looked up directly, otherwise
+     *     only tasks containing its longest word are checked.
+     * </p>
+     */
     public TaskList find(String keyword) {
         String key = keyword.toLowerCase();
         ArrayList<Task> matches = new ArrayList<>();
 
-        for (int i = 0; i < this.size(); i++) {
-            Task t = this.get(i);
-            if (t.getDescription().toLowerCase().contains(key)) {
+        String word = longestWord(key);
+        if (word.isEmpty()) {
+            for (Task t : tasks) {
+                if (t.getDescription().toLowerCase().contains(key)) {
+                    matches.add(t);
+                }
+            }
+            return new TaskList(matches);
+        }
+
+        IntList candidates = tokenIndex().find(word, nextId);
+        boolean needsCheck = word.length() != key.length();
+        for (int i = 0; i < candidates.size(); i++) {
+            Task t = tasks.getById(candidates.get(i));
+            if (!needsCheck || t.getDescription().toLowerCase().contains(key)) {
                 matches.add(t);
             }
         }
         return new TaskList(matches);
     }
 
+    /**
+     * Returns up to {@code k} tasks most similar to the query, best match first, tolerating typos
+     * and fragments (see {@link TrigramIndex}).
+     */
+    public TaskList fuzzyFind(String query, int k) {
+        return byIds(trigramIndex().top(query, k));
+    }
+
+    /**
+     * Returns the deadlines due and events taking place within [from, to] (both inclusive), ordered by
+     * due or start time; ties keep list order.
+     */
+    public TaskList between(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Task> matches = new ArrayList<>();
+        intervalIndex().overlapping(from, to, id -> {
+            Task t = tasks.getById(id);
+            if (overlaps(t, from, to)) {
+                matches.add(t);
+            }
+        });
+        return new TaskList(matches);
+    }
+
+    /**
+     * Returns up to {@code k} undone deadlines and events due at or after {@code now}, soonest first.
+     * Events are due when they start.
+     */
+    public TaskList upcoming(LocalDateTime now, int k) {
+        return byIds(dueQueue().upcoming(now, k));
+    }
+
+    /**
+     * Returns the undone deadlines and events due before {@code now}, longest overdue first.
+     */
+    public TaskList overdue(LocalDateTime now) {
+        return byIds(dueQueue().overdue(now));
+    }
 
     public int size() {
         return tasks.size();
@@ -48,9 +264,124 @@ public class TaskList {
         return tasks.isEmpty();
     }
 
-    // for Storage.save(...)
+    // for Storage.save(...); read-only so the indexes stay in sync
     public List<Task> asList() {
-        return tasks;
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Returns copies of the tasks as they are now, for saving on another thread while this list keeps
+     * changing.
+     */
+    public List<Task> snapshot() {
+        return tasks.snapshot();
+    }
+
+    /**
+     * Replaces every task with the given ones, e.g. a {@link #snapshot()} taken earlier, keeping the backend.
+     */
+    public void restore(List<Task> snapshot) {
+        tasks.reset(snapshot);
+        nextId = tasks.size();
+        tokenIndex = null;
+        trigramIndex = null;
+        intervalIndex = null;
+        dueQueue = null;
+    }
+
+    /**
+     * Returns the positions of the tasks that are done, or of those that are not, in ascending order.
+     */
+    public int[] indexesWithStatus(boolean isDone) {
+        return tasks.indexesWithStatus(isDone);
+    }
+
+    private synchronized TokenIndex tokenIndex() {
+        if (tokenIndex == null) {
+            tokenIndex = new TokenIndex();
+            tasks.forEachEntry((index, id, t) -> tokenIndex.add(id, t.getDescription()));
+        }
+        return tokenIndex;
+    }
+
+    private synchronized TrigramIndex trigramIndex() {
+        if (trigramIndex == null) {
+            trigramIndex = new TrigramIndex();
+            tasks.forEachEntry((index, id, t) -> trigramIndex.add(id, t.getDescription()));
+        }
+        return trigramIndex;
+    }
+
+    private synchronized IntervalIndex intervalIndex() {
+        if (intervalIndex == null) {
+            intervalIndex = new IntervalIndex();
+            tasks.forEachDated((index, id, t) -> intervalIndex.add(id, t));
+        }
+        return intervalIndex;
+    }
+
+    private synchronized DueQueue dueQueue() {
+        if (dueQueue == null) {
+            dueQueue = new DueQueue();
+            tasks.forEachDated((index, id, t) -> dueQueue.add(id, t));
+        }
+        return dueQueue;
+    }
+
+    private void unindex(int id, Task t) {
+        if (tokenIndex != null) {
+            tokenIndex.remove(id, t.getDescription());
+        }
+        if (trigramIndex != null) {
+            trigramIndex.remove(id, t.getDescription());
+        }
+        if (intervalIndex != null) {
+            intervalIndex.remove(id, t);
+        }
+        if (dueQueue != null) {
+            dueQueue.remove(id, t);
+        }
+    }
+
+    private TaskList byIds(int[] matchIds) {
+        ArrayList<Task> matches = new ArrayList<>(matchIds.length);
+        for (int id : matchIds) {
+            matches.add(tasks.getById(id));
+        }
+        return new TaskList(matches);
+    }
+
+    private void renumber() {
+        tasks.renumber();
+        nextId = tasks.size();
+        tokenIndex = null;
+        trigramIndex = null;
+        intervalIndex = null;
+        dueQueue = null;
+    }
+
+    private static boolean overlaps(Task t, LocalDateTime from, LocalDateTime to) {
+        if (t instanceof Deadline d) {
+            return !d.getBy().isBefore(from) && !d.getBy().isAfter(to);
+        }
+        Event e = (Event) t;
+        return !e.getToTime().isBefore(from) && !e.getFromTime().isAfter(to);
     }
-}
 
+    private static String longestWord(String s) {
+        String best = "";
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean isSpace = i == s.length() || Character.isWhitespace(s.charAt(i));
+            if (isSpace && start >= 0) {
+                if (i - start > best.length()) {
+                    best = s.substring(start, i);
+                }
+                start = -1;
+            } else if (!isSpace && start < 0) {
+                start = i;
+            }
+        }
+        return best;
+    }
+}
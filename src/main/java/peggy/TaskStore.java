@@ -0,0 +1,98 @@
+package peggy;
+
+import java.util.Arrays;
+import java.util.List;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+
+/**
+ * Where a {@link TaskList} keeps its tasks: in list order, each with an id that the indexes refer to.
+ * Callers keep ids ascending in list order, so a store can find a task by id without a map.
+ * <p>
+ *     {@link TaskTree} holds the task objects themselves, and {@link LazyTaskStore} makes each from its line
+ *     of the save file when it is first read. {@link ColumnarTaskStore} and {@link MappedTaskStore} keep only
+ *     their fields, on the heap or in a mapped file, and make a task object each time one is read, so a task
+ *     read earlier does not see later marks; change the done status through {@link #setDone(int, boolean)}.
+ * </p>
+ */
+interface TaskStore extends List<Task> {
+    /**
+     * Receives tasks in list order together with their position and id.
+     */
+    interface Visitor {
+        void visit(int index, int id, Task task);
+    }
+
+    int idAt(int index);
+
+    /**
+     * Inserts the task at the given position; {@code index == size()} appends.
+     */
+    void insert(int index, int id, Task task);
+
+    /**
+     * Removes the tasks at the given positions, reporting each to {@code removed} in list order.
+     *
+     * @param positions Positions in ascending order, without duplicates.
+     * @param removed Receives the removed tasks, or null if the caller does not need them.
+     */
+    void removeAll(int[] positions, Visitor removed);
+
+    /**
+     * Returns the task with the given id, or null.
+     */
+    Task getById(int id);
+
+    /**
+     * Marks the task at the index as done or not done.
+     */
+    void setDone(int index, boolean isDone);
+
+    /**
+     * Visits every task in list order in O(n).
+     */
+    void forEachEntry(Visitor visitor);
+
+    /**
+     * Visits the deadlines and events in list order, for the indexes that only hold those. Stores that know
+     * a task's type without reading the task skip to-dos without reading them.
+     */
+    default void forEachDated(Visitor visitor) {
+        forEachEntry((index, id, t) -> {
+            if (t instanceof Deadline || t instanceof Event) {
+                visitor.visit(index, id, t);
+            }
+        });
+    }
+
+    /**
+     * Returns the positions of the tasks that are done, or of those that are not, in ascending order.
+     */
+    default int[] indexesWithStatus(boolean isDone) {
+        int[] found = new int[size()];
+        int[] count = {0};
+        forEachEntry((index, id, t) -> {
+            if (t.isDone() == isDone) {
+                found[count[0]++] = index;
+            }
+        });
+        return Arrays.copyOf(found, count[0]);
+    }
+
+    /**
+     * Replaces every task with the given ones, numbered from 0 upwards.
+     */
+    void reset(List<Task> tasks);
+
+    /**
+     * Numbers the tasks from 0 upwards in list order, for when ids run out.
+     */
+    void renumber();
+
+    /**
+     * Returns the tasks as they are now, unaffected by later changes to this store.
+     */
+    List<Task> snapshot();
+}
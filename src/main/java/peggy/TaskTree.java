@@ -0,0 +1,351 @@
+package peggy;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import peggy.task.Task;
+
+/**
+ * Tasks in list order, each with its id, kept in a tree so that getting, inserting and removing by
+ * position all take O(log n).
+ * <p>
+ *     Implemented as an implicit treap: nodes are ordered by position rather than by a stored key, and
+ *     every node knows the size of its subtree, so the task at position i is found by walking down from
+ *     the root. Callers keep ids ascending in list order, which makes the same tree searchable by id.
+ * </p>
+ */
+class TaskTree extends AbstractList<Task> implements TaskStore {
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Builds a tree of the given tasks in O(n), numbering them from {@code firstId} upwards.
+     */
+    TaskTree(List<Task> tasks, int firstId) {
+        fill(tasks, firstId);
+    }
+
+    @Override
+    public Task get(int index) {
+        return nodeAt(index).task;
+    }
+
+    @Override
+    public int idAt(int index) {
+        return nodeAt(index).id;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public void insert(int index, int id, Task task) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        root = insert(root, index, new Node(task, id, random.nextInt()));
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task t = get(index); // checks the index
+        root = remove(root, index);
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions, reporting each to {@code removed} in list order.
+     * A few positions are removed one by one; many are removed by rebuilding the tree in one pass.
+     */
+    @Override
+    public void removeAll(int[] positions, Visitor removed) {
+        int n = size();
+        int depth = 32 - Integer.numberOfLeadingZeros(n);
+        if ((long) positions.length * depth < n) {
+            for (int p : positions) {
+                if (removed != null) {
+                    Node node = nodeAt(p);
+                    removed.visit(p, node.id, node.task);
+                }
+            }
+            for (int i = positions.length - 1; i >= 0; i--) {
+                root = remove(root, positions[i]);
+            }
+            return;
+        }
+
+        Node[] kept = new Node[n - positions.length];
+        int[] count = {0, 0}; // kept so far, next position to remove
+        forEachNode(root, (index, node) -> {
+            if (count[1] < positions.length && positions[count[1]] == index) {
+                count[1]++;
+                if (removed != null) {
+                    removed.visit(index, node.id, node.task);
+                }
+            } else {
+                kept[count[0]++] = node;
+            }
+        });
+        root = build(kept, count[0]);
+    }
+
+    @Override
+    public Task getById(int id) {
+        Node node = root;
+        while (node != null && node.id != id) {
+            node = id < node.id ? node.left : node.right;
+        }
+        return node == null ? null : node.task;
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        Task t = get(index);
+        if (isDone) {
+            t.markAsDone();
+        } else {
+            t.markAsNotDone();
+        }
+    }
+
+    @Override
+    public void forEachEntry(Visitor visitor) {
+        forEachNode(root, (index, node) -> visitor.visit(index, node.id, node.task));
+    }
+
+    @Override
+    public void reset(List<Task> tasks) {
+        fill(tasks, 0);
+    }
+
+    @Override
+    public void renumber() {
+        Node[] nodes = new Node[size()];
+        forEachNode(root, (index, node) -> nodes[index] = new Node(node.task, index, node.priority));
+        root = build(nodes, nodes.length);
+    }
+
+    @Override
+    public List<Task> snapshot() {
+        ArrayList<Task> copy = new ArrayList<>(size());
+        for (Task t : this) {
+            copy.add(t.copy());
+        }
+        return copy;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            private final ArrayList<Node> stack = new ArrayList<>();
+            private Node next = root;
+
+            @Override
+            public boolean hasNext() {
+                return next != null || !stack.isEmpty();
+            }
+
+            @Override
+            public Task next() {
+                while (next != null) {
+                    stack.add(next);
+                    next = next.left;
+                }
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = stack.remove(stack.size() - 1);
+                next = node.right;
+                return node.task;
+            }
+        };
+    }
+
+    private void fill(List<Task> tasks, int firstId) {
+        Node[] nodes = new Node[tasks.size()];
+        int i = 0;
+        for (Task t : tasks) {
+            nodes[i] = new Node(t, firstId + i, random.nextInt());
+            i++;
+        }
+        root = build(nodes, nodes.length);
+    }
+
+    private interface NodeVisitor {
+        void visit(int index, Node node);
+    }
+
+    // in order, without recursion so a degenerate tree cannot overflow the stack
+    private static void forEachNode(Node root, NodeVisitor visitor) {
+        ArrayList<Node> stack = new ArrayList<>();
+        Node node = root;
+        int index = 0;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.add(node);
+                node = node.left;
+            }
+            node = stack.remove(stack.size() - 1);
+            visitor.visit(index++, node);
+            node = node.right;
+        }
+    }
+
+    private Node nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node insert(Node node, int index, Node added) {
+        if (node == null) {
+            return added;
+        }
+        int leftSize = size(node.left);
+        if (index <= leftSize) {
+            node.left = insert(node.left, index, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, index - leftSize - 1, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node remove(Node node, int index) {
+        int leftSize = size(node.left);
+        if (index == leftSize) {
+            return merge(node.left, node.right);
+        }
+        if (index < leftSize) {
+            node.left = remove(node.left, index);
+        } else {
+            node.right = remove(node.right, index - leftSize - 1);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node top = node.left;
+        node.left = top.right;
+        top.right = node;
+        node.update();
+        top.update();
+        return top;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node top = node.right;
+        node.right = top.left;
+        top.left = node;
+        node.update();
+        top.update();
+        return top;
+    }
+
+    /**
+     * Links nodes already in list order into a treap in O(n): a stack holds the right spine, and each
+     * node adopts the spine nodes of lower priority as its left subtree.
+     */
+    private static Node build(Node[] nodes, int count) {
+        Node[] spine = new Node[Math.max(count, 1)];
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = nodes[i];
+            node.left = null;
+            node.right = null;
+            Node last = null;
+            while (top > 0 && spine[top - 1].priority < node.priority) {
+                last = spine[--top];
+            }
+            node.left = last;
+            if (top > 0) {
+                spine[top - 1].right = node;
+            }
+            spine[top++] = node;
+        }
+        if (top == 0) {
+            return null;
+        }
+        // sizes bottom-up: in reverse breadth-first order every child comes before its parent
+        ArrayList<Node> order = new ArrayList<>(count);
+        order.add(spine[0]);
+        for (int i = 0; i < order.size(); i++) {
+            Node node = order.get(i);
+            if (node.left != null) {
+                order.add(node.left);
+            }
+            if (node.right != null) {
+                order.add(node.right);
+            }
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            order.get(i).update();
+        }
+        return spine[0];
+    }
+
+    private static class Node {
+        private final Task task;
+        private final int id;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        Node(Task task, int id, int priority) {
+            this.task = task;
+            this.id = id;
+            this.priority = priority;
+        }
+
+        void update() {
+            size = 1 + TaskTree.size(left) + TaskTree.size(right);
+        }
+    }
+}
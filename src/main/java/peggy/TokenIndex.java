@@ -0,0 +1,102 @@
+package peggy;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Inverted index from lower-cased description tokens to the ids of the tasks containing them.
+ * <p>
+ *     Tokens are maximal runs of non-whitespace characters of {@code description.toLowerCase()}, so any
+ *     whitespace-free substring of a description lies inside a single token. That lets {@link #find(String)}
+ *     answer the same substring queries as a linear {@code contains} scan by checking the (much smaller)
+ *     set of distinct tokens instead of every task.
+ * </p>
+ */
+class TokenIndex {
+    private final HashMap<String, IntList> postings = new HashMap<>();
+
+    /**
+     * Indexes a task. Ids must be added in ascending order.
+     */
+    void add(int id, String description) {
+        for (String token : tokens(description)) {
+            postings.computeIfAbsent(token, k -> new IntList()).add(id);
+        }
+    }
+
+    void remove(int id, String description) {
+        for (String token : tokens(description)) {
+            IntList ids = postings.get(token);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of tasks whose lower-cased description contains the given whitespace-free,
+     * lower-cased fragment.
+     *
+     * @param fragment Lower-cased text without whitespace.
+     * @param idLimit Upper bound (exclusive) of the ids in use.
+     * @return Matching ids, in ascending order.
+     */
+    IntList find(String fragment, int idLimit) {
+        IntList exact = postings.get(fragment);
+        IntList single = exact;
+        BitSet union = null;
+        for (Map.Entry<String, IntList> e : postings.entrySet()) {
+            if (e.getValue() == exact || !e.getKey().contains(fragment)) {
+                continue;
+            }
+            if (single == null) {
+                single = e.getValue();
+                continue;
+            }
+            if (union == null) {
+                union = new BitSet(idLimit);
+                addAll(union, single);
+            }
+            addAll(union, e.getValue());
+        }
+
+        if (union == null) {
+            return single == null ? new IntList() : single;
+        }
+        IntList out = new IntList(union.cardinality());
+        for (int id = union.nextSetBit(0); id >= 0; id = union.nextSetBit(id + 1)) {
+            out.add(id);
+        }
+        return out;
+    }
+
+    private static void addAll(BitSet set, IntList ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            set.set(ids.get(i));
+        }
+    }
+
+    /**
+     * Splits the lower-cased description into its distinct whitespace-separated tokens.
+     */
+    static HashSet<String> tokens(String description) {
+        String s = description.toLowerCase();
+        HashSet<String> out = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean isSpace = i == s.length() || Character.isWhitespace(s.charAt(i));
+            if (isSpace && start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            } else if (!isSpace && start < 0) {
+                start = i;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,373 @@
+package peggy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
+
+/**
+ * Trigram index over the words of task descriptions, used to rank tasks by similarity to a (possibly
+ * misspelt or partial) query.
+ * <p>
+ *     Like PostgreSQL's pg_trgm, text is lower-cased and split into words of letters and digits, and each
+ *     word is padded as {@code "  word "} before taking its distinct 3-character substrings. Two words are
+ *     as similar as the Jaccard index of their trigram sets. A task scores, for each query word, the
+ *     similarity of its closest word (if at least {@link #MIN_SIMILARITY}), averaged over the query words.
+ * </p>
+ * <p>
+ *     The trigrams index the vocabulary rather than every task, so typo lookup touches each distinct word
+ *     once. Ranking then walks the id-ordered task postings of the matched words WAND-style: once k tasks
+ *     are held in a bounded heap, postings are skipped past any task whose best possible score cannot
+ *     beat the worst of them.
+ * </p>
+ * <p>
+ *     Word ids are handed out in ascending order so that postings stay sorted. Ids of removed words are not
+ *     reused; instead, once most ids are dead, the live words are renumbered in the same order, which keeps
+ *     the word arrays proportional to the vocabulary over a long session.
+ * </p>
+ */
+class TrigramIndex {
+    /** Words less similar than this to a query word do not count as matches. */
+    static final double MIN_SIMILARITY = 0.3;
+
+    private static final double EPSILON = 1e-9;
+    private static final int MIN_COMPACT_IDS = 1024; // fewer ids than this are never renumbered
+
+    private final HashMap<String, Word> vocabulary = new HashMap<>();
+    private final HashMap<Long, IntList> gramPostings = new HashMap<>(); // trigram -> word ids
+    private Word[] words = new Word[16]; // by word id
+    private int nextWordId;
+    private int liveWords;
+    private int[] shared = new int[16]; // scratch: trigrams shared with the current query word, per word id
+
+    /**
+     * Indexes a task. Ids must be added in ascending order.
+     */
+    void add(int id, String description) {
+        for (String w : words(description)) {
+            Word word = vocabulary.get(w);
+            if (word == null) {
+                word = newWord(w);
+            }
+            word.tasks.add(id);
+        }
+    }
+
+    void remove(int id, String description) {
+        for (String w : words(description)) {
+            Word word = vocabulary.get(w);
+            if (word == null) {
+                continue;
+            }
+            word.tasks.remove(id);
+            if (word.tasks.isEmpty()) {
+                removeWord(word);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the most similar tasks, best first (ties go to the earlier task). Concurrent
+     * queries take turns, as they share the scratch array.
+     *
+     * @param query Text to match.
+     * @param k Maximum number of ids to return.
+     */
+    synchronized int[] top(String query, int k) {
+        LinkedHashSet<String> queryWords = words(query);
+        if (queryWords.isEmpty() || k <= 0) {
+            return new int[0];
+        }
+
+        ArrayList<Cursor> cursors = new ArrayList<>();
+        int group = 0;
+        for (String w : queryWords) {
+            for (Match m : similarWords(w)) {
+                cursors.add(new Cursor(group, m.similarity, words[m.id].tasks));
+            }
+            group++;
+        }
+
+        int groups = queryWords.size();
+        PriorityQueue<Match> best = new PriorityQueue<>(k + 1, Match.WORST_FIRST);
+        double threshold = MIN_SIMILARITY - EPSILON; // score to beat, averaged over the query words
+        Cursor[] cs = cursors.toArray(new Cursor[0]);
+        double[] groupMax = new double[groups];
+
+        while (true) {
+            sortByDoc(cs);
+
+            // pivot: first cursor at which the best possible score of its task could beat the threshold
+            Arrays.fill(groupMax, 0);
+            double bound = 0;
+            int pivot = -1;
+            for (int p = 0; p < cs.length && cs[p].doc() != Integer.MAX_VALUE; p++) {
+                Cursor c = cs[p];
+                if (c.weight > groupMax[c.group]) {
+                    bound += c.weight - groupMax[c.group];
+                    groupMax[c.group] = c.weight;
+                }
+                if (bound / groups > threshold) {
+                    pivot = p;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+
+            int doc = cs[pivot].doc();
+            if (cs[0].doc() != doc) {
+                for (int p = 0; p < pivot && cs[p].doc() < doc; p++) {
+                    cs[p].advanceTo(doc);
+                }
+                continue;
+            }
+
+            Arrays.fill(groupMax, 0);
+            for (int p = 0; p < cs.length && cs[p].doc() == doc; p++) {
+                groupMax[cs[p].group] = Math.max(groupMax[cs[p].group], cs[p].weight);
+                cs[p].advanceTo(doc + 1);
+            }
+            double score = 0;
+            for (double g : groupMax) {
+                score += g;
+            }
+            score /= groups;
+
+            if (score > threshold) {
+                best.add(new Match(doc, score));
+                if (best.size() > k) {
+                    best.poll();
+                }
+                if (best.size() == k) {
+                    threshold = Math.max(threshold, best.peek().similarity);
+                }
+            }
+        }
+
+        int[] out = new int[best.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = best.poll().id;
+        }
+        return out;
+    }
+
+    /**
+     * Returns vocabulary words at least {@link #MIN_SIMILARITY} similar to the query word.
+     * <p>
+     *     A match shares at least {@code need} of the query's trigrams, so it must appear in one of the
+     *     {@code grams - need + 1} rarest trigram postings; the longer postings are only probed for
+     *     words already found.
+     * </p>
+     */
+    private ArrayList<Match> similarWords(String queryWord) {
+        long[] grams = trigrams(queryWord);
+        IntList[] lists = new IntList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = gramPostings.getOrDefault(grams[i], new IntList());
+        }
+        Arrays.sort(lists, Comparator.comparingInt(IntList::size));
+
+        int need = (int) Math.ceil(MIN_SIMILARITY * grams.length);
+        int probe = grams.length - need + 1;
+
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int i = 0; i < probe; i++) {
+            IntList ids = lists[i];
+            for (int j = 0; j < ids.size(); j++) {
+                int id = ids.get(j);
+                if (shared[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        ArrayList<Match> out = new ArrayList<>();
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            int s = shared[id];
+            shared[id] = 0;
+            for (int i = probe; i < lists.length; i++) {
+                if (lists[i].indexOf(id) >= 0) {
+                    s++;
+                }
+            }
+            double similarity = (double) s / (grams.length + words[id].gramCount - s);
+            if (similarity >= MIN_SIMILARITY) {
+                out.add(new Match(id, similarity));
+            }
+        }
+        return out;
+    }
+
+    private Word newWord(String text) {
+        long[] grams = trigrams(text);
+        Word word = new Word(nextWordId++, text, grams.length);
+        if (word.id >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+            shared = Arrays.copyOf(shared, words.length);
+        }
+        words[word.id] = word;
+        liveWords++;
+        vocabulary.put(text, word);
+        for (long g : grams) {
+            gramPostings.computeIfAbsent(g, x -> new IntList()).add(word.id);
+        }
+        return word;
+    }
+
+    private void removeWord(Word word) {
+        vocabulary.remove(word.text);
+        words[word.id] = null;
+        liveWords--;
+        for (long g : trigrams(word.text)) {
+            IntList ids = gramPostings.get(g);
+            if (ids != null) {
+                ids.remove(word.id);
+                if (ids.isEmpty()) {
+                    gramPostings.remove(g);
+                }
+            }
+        }
+        if (nextWordId >= MIN_COMPACT_IDS && liveWords < nextWordId / 4) {
+            compactIds();
+        }
+    }
+
+    // renumbers the live words from 0 in their current order, so every posting stays sorted
+    private void compactIds() {
+        int[] renumbered = new int[nextWordId];
+        Word[] live = new Word[Math.max(16, liveWords * 2)];
+        int next = 0;
+        for (int id = 0; id < nextWordId; id++) {
+            Word word = words[id];
+            if (word != null) {
+                renumbered[id] = next;
+                word.id = next;
+                live[next++] = word;
+            }
+        }
+        for (IntList ids : gramPostings.values()) {
+            for (int i = 0; i < ids.size(); i++) {
+                ids.set(i, renumbered[ids.get(i)]);
+            }
+        }
+        words = live;
+        shared = new int[live.length];
+        nextWordId = next;
+    }
+
+    private static void sortByDoc(Cursor[] cs) {
+        // insertion sort: cursors are nearly sorted after each step
+        for (int i = 1; i < cs.length; i++) {
+            Cursor c = cs[i];
+            int doc = c.doc();
+            int j = i - 1;
+            while (j >= 0 && cs[j].doc() > doc) {
+                cs[j + 1] = cs[j];
+                j--;
+            }
+            cs[j + 1] = c;
+        }
+    }
+
+    /**
+     * Splits text into its distinct lower-cased words of letters and digits, in order of appearance.
+     */
+    static LinkedHashSet<String> words(String text) {
+        String s = text.toLowerCase();
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean isWordChar = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the distinct trigrams of the padded word, each packed into a long.
+     */
+    static long[] trigrams(String word) {
+        // "  word " -> "  w", " wo", "wor", "ord", "rd "
+        HashSet<Long> out = new HashSet<>();
+        char a = ' ';
+        char b = ' ';
+        for (int j = 0; j <= word.length(); j++) {
+            char c = j < word.length() ? word.charAt(j) : ' ';
+            out.add(((long) a << 32) | ((long) b << 16) | c);
+            a = b;
+            b = c;
+        }
+
+        long[] grams = new long[out.size()];
+        int i = 0;
+        for (long g : out) {
+            grams[i++] = g;
+        }
+        return grams;
+    }
+
+    private static class Word {
+        private int id; // changed only by compactIds
+        private final String text;
+        private final int gramCount;
+        private final IntList tasks = new IntList(); // ids of tasks containing the word
+
+        Word(int id, String text, int gramCount) {
+            this.id = id;
+            this.text = text;
+            this.gramCount = gramCount;
+        }
+    }
+
+    /**
+     * Position in the task postings of one vocabulary word matched by query word {@code group}.
+     */
+    private static class Cursor {
+        private final int group;
+        private final double weight;
+        private final IntList tasks;
+        private int pos;
+
+        Cursor(int group, double weight, IntList tasks) {
+            this.group = group;
+            this.weight = weight;
+            this.tasks = tasks;
+        }
+
+        int doc() {
+            return pos < tasks.size() ? tasks.get(pos) : Integer.MAX_VALUE;
+        }
+
+        void advanceTo(int target) {
+            pos = tasks.lowerBound(target, pos);
+        }
+    }
+
+    private static class Match {
+        static final Comparator<Match> WORST_FIRST = Comparator.<Match>comparingDouble(m -> m.similarity)
+                .thenComparingInt(m -> -m.id);
+
+        private final int id;
+        private final double similarity;
+
+        Match(int id, double similarity) {
+            this.id = id;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -16,6 +16,16 @@ public class Deadline extends Task {
         super(description);
         this.by = Parser.parseDateTime(by);
     }
+    /**
+     * Creates a deadline task from an already parsed due date/time.
+     *
+     * @param description Deadline description.
+     * @param by Due date/time.
+     */
+    public Deadline(String description, LocalDateTime by) {
+        super(description);
+        this.by = by;
+    }
     /**
      * Returns the due date/time of the deadline.
      *
@@ -25,6 +35,11 @@ public class Deadline extends Task {
         return by;
     }
 
+    @Override
+    public Deadline copy() {
+        return copyStatusTo(new Deadline(getDescription(), by));
+    }
+
     @Override
     public String toFileString() {
         return "D | " + (isDone() ? 1 : 0) + " | " + getDescription() + " | " + by;
@@ -19,6 +19,18 @@ public class Event extends Task {
         this.fromTime = Parser.parseDateTime(fromTime);
         this.toTime = Parser.parseDateTime(toTime);
     }
+    /**
+     * Creates an event task from already parsed start and end date/times.
+     *
+     * @param description Event description.
+     * @param fromTime Start date/time.
+     * @param toTime End date/time.
+     */
+    public Event(String description, LocalDateTime fromTime, LocalDateTime toTime) {
+        super(description);
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
     /**
      * Returns the start date/time of the event.
      *
@@ -36,6 +48,11 @@ public class Event extends Task {
         return toTime;
     }
 
+    @Override
+    public Event copy() {
+        return copyStatusTo(new Event(getDescription(), fromTime, toTime));
+    }
+
     @Override
     public String toFileString() {
         return "E | " + (isDone() ? 1 : 0) + " | " + getDescription()
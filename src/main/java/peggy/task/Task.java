@@ -8,7 +8,7 @@ package peggy.task;
  */
 public class Task {
     private final String description;
-    private boolean isDone;
+    private volatile boolean isDone; // may be read outside Peggy's lock, e.g. while streaming a listing
     /**
      * Creates a task with the given description. The task is initially not done.
      *
@@ -54,6 +54,27 @@ public class Task {
     public boolean isDone() {
         return isDone;
     }
+    /**
+     * Returns an independent copy of this task, including its done status.
+     *
+     * @return A task equal to this one that later marks do not affect.
+     */
+    public Task copy() {
+        return copyStatusTo(new Task(description));
+    }
+    /**
+     * Copies this task's done status onto a freshly created copy.
+     *
+     * @param copy Copy of this task.
+     * @param <T> Type of the copy.
+     * @return The copy.
+     */
+    protected <T extends Task> T copyStatusTo(T copy) {
+        if (isDone) {
+            copy.markAsDone();
+        }
+        return copy;
+    }
     /**
      * Converts the task into a line to be stored in the save file.
      *
@@ -12,6 +12,11 @@ public class ToDo extends Task {
         super(description);
     }
 
+    @Override
+    public ToDo copy() {
+        return copyStatusTo(new ToDo(getDescription()));
+    }
+
     @Override
     public String toFileString() {
         return "T | " + (isDone() ? 1 : 0) + " | " + getDescription();
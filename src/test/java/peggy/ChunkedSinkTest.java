@@ -0,0 +1,24 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkedSinkTest {
+
+    @Test
+    void append_pastChunkSize_passesOnWholeLines() {
+        List<String> chunks = new ArrayList<>();
+        ChunkedSink sink = new ChunkedSink(10, chunks::add);
+
+        sink.append("first line\n").append("sec");
+        assertEquals(List.of("first line\n"), chunks);
+
+        sink.append("ond line").append('\n').append("tail");
+        sink.flush();
+        assertEquals(List.of("first line\n", "second line\n", "tail"), chunks);
+    }
+}
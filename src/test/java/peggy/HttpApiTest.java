@@ -0,0 +1,140 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import peggy.task.Task;
+
+public class HttpApiTest {
+    private static final int CLIENTS = 16;
+    private static final int TASKS_PER_CLIENT = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).build();
+    }
+
+    private static HttpRequest post(String url, String form) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void requests_addMarkListDelete_returnJson() throws Exception {
+        Peggy peggy = new Peggy(tempDir.resolve("peggy.txt").toString());
+        HttpClient client = HttpClient.newHttpClient();
+        try (HttpApi api = new HttpApi(peggy, 0)) {
+            String tasks = "http://localhost:" + api.getPort() + "/tasks";
+
+            HttpResponse<String> added = send(client, post(tasks, "description=read+%22book%22+a%5Cb"));
+            assertEquals(201, added.statusCode());
+            assertEquals("{\"index\":1,\"type\":\"todo\",\"description\":\"read \\\"book\\\" a\\\\b\",\"done\":false}",
+                    added.body());
+            assertEquals(201, send(client, post(tasks,
+                    "type=deadline&description=return+book&by=2%2F12%2F2019+1800")).statusCode());
+
+            HttpResponse<String> marked = send(client, post(tasks + "/2/mark", ""));
+            assertEquals(200, marked.statusCode());
+            assertTrue(marked.body().contains("\"done\":true,\"by\":\"2019-12-02T18:00\""));
+
+            String list = send(client, get(tasks + "?page=2&size=1")).body();
+            assertTrue(list.startsWith("{\"total\":2,\"tasks\":[{\"index\":2,\"type\":\"deadline\""));
+            assertTrue(send(client, get(tasks + "/search?q=return")).body().contains("return book"));
+
+            HttpResponse<String> rejected = send(client, post(tasks, "type=event&description=x&from=&to="));
+            assertEquals(400, rejected.statusCode());
+            assertTrue(rejected.body().startsWith("{\"error\":"));
+            assertEquals(404, send(client, get(tasks + "/1/archive")).statusCode());
+            assertEquals(405, send(client, get(tasks + "/1")).statusCode());
+
+            HttpResponse<String> deleted = send(client, HttpRequest.newBuilder(URI.create(tasks + "/done"))
+                    .DELETE().build());
+            assertTrue(deleted.body().startsWith("{\"count\":1,"));
+        } finally {
+            peggy.close();
+        }
+        assertEquals(1, new Storage(tempDir.resolve("peggy.txt").toString(), true,
+                Storage.DEFAULT_COMPACTION_THRESHOLD).load().size());
+    }
+
+    @Test
+    void addTask_fieldsWithLineBreaksOrBars_rejectedAndFlagsKeptAsText() throws Exception {
+        Peggy peggy = new Peggy(tempDir.resolve("peggy.txt").toString());
+        HttpClient client = HttpClient.newHttpClient();
+        try (HttpApi api = new HttpApi(peggy, 0)) {
+            String tasks = "http://localhost:" + api.getPort() + "/tasks";
+            assertEquals(201, send(client, post(tasks, "description=keep+me")).statusCode());
+
+            assertEquals(400, send(client, post(tasks, "description=x%0AX+%7C+0")).statusCode());
+            assertEquals(400, send(client, post(tasks, "description=x%0DX")).statusCode());
+            assertEquals(400, send(client, post(tasks, "description=a+%7C+b")).statusCode());
+            assertEquals(400, send(client, post(tasks,
+                    "type=deadline&description=essay&by=2%2F12%2F2019%0A1800")).statusCode());
+
+            HttpResponse<String> added = send(client, post(tasks,
+                    "type=deadline&description=read+%2Fby+notes+%2Ffrom+ch1&by=2019-12-02+1800"));
+            assertEquals(201, added.statusCode());
+            assertTrue(added.body().contains("\"description\":\"read /by notes /from ch1\""));
+        } finally {
+            peggy.close();
+        }
+        List<Task> saved = new Storage(tempDir.resolve("peggy.txt").toString(), true,
+                Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+        assertEquals(2, saved.size());
+        assertEquals("keep me", saved.get(0).getDescription());
+        assertEquals("read /by notes /from ch1", saved.get(1).getDescription());
+    }
+
+    @Test
+    void manyClients_concurrentAdds_allListed() throws Exception {
+        Peggy peggy = new Peggy(tempDir.resolve("peggy.txt").toString());
+        HttpClient client = HttpClient.newHttpClient();
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try (HttpApi api = new HttpApi(peggy, 0)) {
+            String tasks = "http://localhost:" + api.getPort() + "/tasks";
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                String tag = "c" + c;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < TASKS_PER_CLIENT; i++) {
+                        assertEquals(201, send(client, post(tasks, "description=" + tag + "+" + i)).statusCode());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            // the full listing is longer than one buffer, so it is streamed in chunks
+            String list = send(client, get(tasks)).body();
+            assertTrue(list.startsWith("{\"total\":" + CLIENTS * TASKS_PER_CLIENT + ","));
+            assertEquals(CLIENTS * TASKS_PER_CLIENT, list.split("\"index\":", -1).length - 1);
+            assertTrue(list.endsWith("]}"));
+        } finally {
+            pool.shutdown();
+            peggy.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void bucketOf_everyValue_middleWithinSixPercent() {
+        for (long v = 0; v < 1_000_000; v += 1 + v / 100) {
+            long middle = LatencyHistogram.middleOf(LatencyHistogram.bucketOf(v));
+            assertTrue(Math.abs(middle - v) <= v * 0.0625 + 0.5, "value " + v + " read back as " + middle);
+        }
+    }
+
+    @Test
+    void percentile_uniformValues_closeToExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5));
+        for (int i = 1; i <= 10_000; i++) {
+            h.record(i * 1_000L);
+        }
+        assertEquals(10_000, h.getCount());
+        assertEquals(10_000_000, h.getMax());
+        assertEquals(5_000_000, h.percentile(0.5), 5_000_000 * 0.0625);
+        assertEquals(9_900_000, h.percentile(0.99), 9_900_000 * 0.0625);
+        assertEquals(10_000_000, h.percentile(1.0), 10_000_000 * 0.0625);
+    }
+}
@@ -0,0 +1,32 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ParsedCommandTest {
+
+    @Test
+    void parse_mixedWhitespace_splitsWordAndArgs() {
+        ParsedCommand cmd = ParsedCommand.parse("  MARK \t 2   3 ");
+        assertEquals(CommandType.MARK, cmd.getType());
+        assertEquals(2, cmd.getArgCount());
+        assertEquals("2", cmd.getArg(0));
+        assertEquals("3", cmd.getArg(1));
+        assertNull(cmd.getArg(2));
+        assertEquals("2   3", cmd.getArgs());
+    }
+
+    @Test
+    void parse_blank_isEmptyAndUnknown() {
+        assertTrue(ParsedCommand.parse("   ").isEmpty());
+        assertEquals(CommandType.UNKNOWN, ParsedCommand.parse(null).getType());
+    }
+
+    @Test
+    void splitFlags_flagsInOrder_splitsSegments() {
+        ParsedCommand cmd = ParsedCommand.parse("event a/to b /from 2/12/2019 1800 /to 2/12/2019 2000");
+        assertArrayEquals(new String[] {"a/to b", "2/12/2019 1800", "2/12/2019 2000"}, cmd.splitFlags("from", "to"));
+        assertNull(ParsedCommand.parse("event x /to y /from z").splitFlags("from", "to"));
+    }
+}
@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 
+import peggy.task.ToDo;
+
 public class ParserTest {
 
     @Test
@@ -32,4 +34,68 @@ public class ParserTest {
         LocalDateTime dt = Parser.parseDateTime("2/12/2019 1800");
         assertEquals(LocalDateTime.of(2019, 12, 2, 18, 0), dt);
     }
+
+    @Test
+    void parseBetween_timesWithSpaces_splitsBetweenThem() {
+        LocalDateTime[] range = Parser.parseBetween("between 2/12/2019 1800 3/12/2019 0900");
+        assertEquals(LocalDateTime.of(2019, 12, 2, 18, 0), range[0]);
+        assertEquals(LocalDateTime.of(2019, 12, 3, 9, 0), range[1]);
+    }
+
+    @Test
+    void parseBetween_dateOnlyEnd_coversWholeDay() {
+        LocalDateTime[] range = Parser.parseBetween("between 2019-12-01 2019-12-07");
+        assertEquals(LocalDateTime.of(2019, 12, 1, 0, 0), range[0]);
+        assertEquals(LocalDateTime.of(2019, 12, 7, 23, 59, 59, 999_999_999), range[1]);
+    }
+
+    @Test
+    void parseDateTime_isoWithSecondsAndFraction_parsesExactly() {
+        assertEquals(LocalDateTime.of(2019, 12, 2, 18, 0, 30, 500_000_000),
+                Parser.parseDateTime("2019-12-02T18:00:30.5"));
+    }
+
+    @Test
+    void parseDateTime_dayPastEndOfMonth_clampedLikeFormatter() {
+        assertEquals(LocalDateTime.of(2019, 2, 28, 18, 0), Parser.parseDateTime("31/2/2019 1800"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 0, 0), Parser.parseDateTime("2020-02-30 00:00"));
+    }
+
+    @Test
+    void parseDateTime_invalid_throwsSameMessage() {
+        for (String raw : new String[] {"2019-02-30", "2019-12-02T24:00", "1/13/2019", "2/12/2019  1800",
+                "2/12/2019 3"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> Parser.parseDateTime(raw));
+            assertEquals("Invalid date/time. Try: 2/12/2019 1800 or 2019-12-02 1800", e.getMessage());
+        }
+    }
+
+    @Test
+    void parseListPage_pageAndSize_parsedWithDefaults() {
+        assertArrayEquals(new int[] {0, 50}, Parser.parseListPage("list", 50));
+        assertArrayEquals(new int[] {3, 50}, Parser.parseListPage("list 3", 50));
+        assertArrayEquals(new int[] {3, 20}, Parser.parseListPage("list 3 20", 50));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseListPage("list 0", 50));
+    }
+
+    @Test
+    void parseIndexes_rangesListsAndStatus_sortedWithoutDuplicates() {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(new ToDo("task " + i));
+        }
+        tasks.markAsDone(4);
+        tasks.markAsDone(9);
+
+        assertArrayEquals(new int[] {1}, Parser.parseIndexes(ParsedCommand.parse("delete 2"), tasks, "delete"));
+        assertArrayEquals(new int[] {2, 6, 8, 9, 10, 11},
+                Parser.parseIndexes(ParsedCommand.parse("delete 9-12,3 7, 10"), tasks, "delete"));
+        assertArrayEquals(new int[] {4, 9}, Parser.parseIndexes(ParsedCommand.parse("delete done"), tasks, "delete"));
+        assertEquals(28, Parser.parseIndexes(ParsedCommand.parse("mark undone"), tasks, "mark").length);
+        assertThrows(IllegalArgumentException.class,
+                () -> Parser.parseIndexes(ParsedCommand.parse("delete 20-31"), tasks, "delete"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Parser.parseIndexes(ParsedCommand.parse("delete 5-3"), tasks, "delete"));
+    }
 }
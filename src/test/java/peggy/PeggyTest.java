@@ -0,0 +1,169 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PeggyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static BufferedReader script(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+
+    @Test
+    void runScript_lenient_skipsRejectedLinesAndSavesTheRest() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy peggy = new Peggy(file);
+        StringBuilder out = new StringBuilder();
+
+        boolean isKept = peggy.runScript(script("# setup\ntodo read book\n\nmark 5\ntodo essay\nmark 1\n"),
+                "setup", false, out);
+        peggy.close();
+
+        assertTrue(isKept);
+        assertTrue(out.toString().contains("Line 4: Task number out of range."));
+        assertTrue(out.toString().contains("Ran 4 commands from setup"));
+        assertTrue(out.toString().contains("1 failed"));
+        assertEquals(2, new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD).load().size());
+    }
+
+    @Test
+    void runScript_strictWithRejectedLine_rollsBackEverything() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy peggy = new Peggy(file);
+        peggy.getResponse("todo read book");
+        StringBuilder out = new StringBuilder();
+
+        boolean isKept = peggy.runScript(script("mark 1\ndelete 1\ntodo essay\nunmark 7\ntodo never\n"),
+                "import", true, out);
+
+        assertFalse(isKept);
+        assertTrue(out.toString().contains("Line 4:"));
+        assertTrue(out.toString().contains("Rolled back"));
+        assertTrue(peggy.getResponse("list").contains("1. [T][ ] read book"));
+        peggy.close();
+        assertEquals(1, new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD).load().size());
+    }
+
+    @Test
+    void stats_afterCommands_showsEachUsedCommandWithPhases() throws Exception {
+        Peggy peggy = new Peggy(tempDir.resolve("peggy.txt").toString());
+        peggy.getResponse("todo read book");
+        peggy.getResponse("todo return book");
+        peggy.getResponse("find book");
+        String stats = peggy.getResponse("stats");
+        peggy.close();
+
+        assertTrue(stats.contains("todo x2\n  total "));
+        assertTrue(stats.contains("find x1\n"));
+        assertTrue(stats.contains("  persist "));
+        assertFalse(stats.contains("deadline x"));
+        assertTrue(stats.contains("0 failed writes, 0 commands not saved."));
+    }
+
+    @Test
+    void mappedBackend_importsOnceThenKeepsChangesInMappedFile() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy text = new Peggy(file);
+        text.getResponse("todo read book");
+        text.close();
+
+        Peggy peggy = new Peggy(file, DurabilityPolicy.everyCommand(), TaskList.Backend.MAPPED);
+        peggy.getResponse("todo a description far too long to fit in the record itself");
+        peggy.getResponse("deadline essay /by 2026-05-01 1200");
+        peggy.getResponse("mark 2");
+        peggy.getResponse("delete 1");
+        String listed = peggy.getResponse("list");
+        peggy.close();
+
+        Peggy reopened = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        assertEquals(listed, reopened.getResponse("list"));
+        assertTrue(listed.contains("1. [T][X] a description far too long to fit in the record itself"));
+        assertTrue(listed.contains("2. [D][ ] essay"));
+        reopened.close();
+        assertEquals(2, new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD).load().size());
+    }
+
+    @Test
+    void mappedBackend_notClosed_writtenBackByNextTreeStart() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy mapped = new Peggy(file, DurabilityPolicy.everyCommand(), TaskList.Backend.MAPPED);
+        mapped.getResponse("todo read book");
+        mapped.getResponse("todo return book");
+        mapped.getResponse("delete 1");
+        String listed = mapped.getResponse("list"); // and never closed, as after a crash
+
+        Peggy tree = new Peggy(file);
+        assertEquals(listed, tree.getResponse("list"));
+        tree.getResponse("todo essay");
+        tree.close();
+        assertFalse(Files.exists(Path.of(file + ".map")));
+
+        Peggy remapped = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        assertTrue(remapped.getResponse("list").contains("2. [T][ ] essay"));
+        remapped.close();
+    }
+
+    @Test
+    void mappedBackend_tornSideFileFromCrash_leavesTasksAsBefore() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy peggy = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        peggy.getResponse("todo read book");
+        peggy.getResponse("todo return book");
+        String listed = peggy.getResponse("list");
+        peggy.close();
+        Path tail = Path.of(file + ".map.tail");
+        Files.write(tail, new byte[] {0, 0, 0, 0, 0, 0, 0, 1, 42}); // a delete cut short before its end marker
+
+        Peggy reopened = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        assertEquals(listed, reopened.getResponse("list"));
+        reopened.getResponse("delete 1");
+        assertTrue(reopened.getResponse("list").contains("1. [T][ ] return book"));
+        reopened.close();
+        assertFalse(Files.exists(tail));
+    }
+
+    @Test
+    void mappedBackend_sessionWithoutChanges_leavesSaveFileAlone() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy text = new Peggy(file);
+        text.getResponse("todo read book");
+        text.close();
+        Peggy imported = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        imported.close();
+        Files.writeString(Path.of(file), "# kept unless the file is rewritten\n", StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        String saved = Files.readString(Path.of(file));
+
+        Peggy peggy = new Peggy(file, DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED);
+        peggy.getResponse("list");
+        peggy.getResponse("find book");
+        peggy.close();
+
+        assertEquals(saved, Files.readString(Path.of(file)));
+    }
+
+    @Test
+    void mappedBackend_saveFileNotLoadable_failsOpenAndKeepsIt() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        byte[] unreadable = {(byte) 0x89, 'P', 'G', 'Y', 99}; // a binary save file of an unknown version
+        Files.write(file, unreadable);
+
+        assertThrows(UncheckedIOException.class,
+                () -> new Peggy(file.toString(), DurabilityPolicy.DEFAULT, TaskList.Backend.MAPPED));
+
+        assertArrayEquals(unreadable, Files.readAllBytes(file));
+        assertFalse(Files.exists(Path.of(file + ".map")));
+    }
+}
@@ -0,0 +1,159 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+public class PersistenceWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String add(String description) {
+        return Journal.addRecord(new ToDo(description));
+    }
+
+    private List<Task> reload(String file) throws IOException {
+        return new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+    }
+
+    @Test
+    void submit_whileWriterBusy_coalescesQueuedRecordsIntoOneWrite() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Storage storage = new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD) {
+            @Override
+            public long append(List<String> records) throws IOException {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.append(records);
+            }
+        };
+        storage.load();
+        PersistenceWriter writer = new PersistenceWriter(storage, DurabilityPolicy.onExit());
+
+        writer.submit(add("first"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            writer.submit(add("queued " + i));
+        }
+        release.countDown();
+        writer.close();
+
+        // the first record, then the 20 queued behind it together, and maybe a pass that only forces them
+        assertTrue(writer.getWrites() <= 3);
+        assertEquals(21, reload(file).size());
+    }
+
+    @Test
+    void flushAndClose_eachPolicy_leaveEveryRecordLoadable() throws Exception {
+        DurabilityPolicy[] policies = {
+            DurabilityPolicy.everyCommand(), DurabilityPolicy.everyMillis(50), DurabilityPolicy.onExit()
+        };
+        for (int p = 0; p < policies.length; p++) {
+            String file = tempDir.resolve("peggy" + p + ".txt").toString();
+            Storage storage = new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+            storage.load();
+            PersistenceWriter writer = new PersistenceWriter(storage, policies[p]);
+
+            writer.submit(add("read book"));
+            writer.submitAll(List.of(add("return book"), Journal.markRecord(0, true)));
+            writer.flush();
+            List<Task> flushed = reload(file);
+            assertEquals(2, flushed.size());
+            assertTrue(flushed.get(0).isDone());
+
+            writer.submit(Journal.deleteRecord(1));
+            writer.close();
+            assertEquals(1, reload(file).size());
+        }
+    }
+
+    @Test
+    void flush_afterWriteFailedHalfway_retriesWithoutRecordingTwice() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        boolean[] hasFailed = {false};
+        Storage storage = new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD) {
+            @Override
+            public long append(List<String> records) throws IOException {
+                if (!hasFailed[0] && records.size() > 1) {
+                    hasFailed[0] = true;
+                    super.append(records.subList(0, 1));
+                    throw new IOException("disk full");
+                }
+                return super.append(records);
+            }
+        };
+        storage.load();
+        ArrayList<Task> tasks = new ArrayList<>();
+        tasks.add(new ToDo("delete me"));
+        tasks.add(new ToDo("keep"));
+        storage.save(tasks);
+        PersistenceWriter writer = new PersistenceWriter(storage, DurabilityPolicy.onExit());
+
+        writer.submitAll(List.of(Journal.deleteRecord(0), add("read book")));
+        boolean isFlushed = false;
+        for (int attempt = 0; attempt < 5 && !isFlushed; attempt++) {
+            try {
+                writer.flush();
+                isFlushed = true;
+            } catch (IOException e) {
+                assertEquals("disk full", e.getMessage());
+            }
+        }
+        writer.close();
+
+        assertTrue(isFlushed);
+        assertEquals(1, writer.getFailedWrites());
+        List<Task> loaded = reload(file);
+        assertEquals(2, loaded.size()); // a repeated X | 0 would also delete "keep"
+        assertEquals("keep", loaded.get(0).getDescription());
+        assertEquals("read book", loaded.get(1).getDescription());
+    }
+
+    @Test
+    void submit_afterForceFailed_retriesWithoutRecordingTwice() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        boolean[] hasFailed = {false};
+        Storage storage = new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD) {
+            @Override
+            public void force() throws IOException {
+                if (!hasFailed[0]) {
+                    hasFailed[0] = true;
+                    throw new IOException("fsync failed");
+                }
+                super.force();
+            }
+        };
+        storage.load();
+        PersistenceWriter writer = new PersistenceWriter(storage, DurabilityPolicy.everyCommand());
+
+        try {
+            writer.submit(add("only one"));
+        } catch (IOException e) {
+            assertEquals("fsync failed", e.getMessage()); // unless it failed before submit began to wait
+        }
+        writer.close(); // retries the batch, whose record already reached the journal
+
+        assertEquals(1, writer.getFailedWrites());
+        List<Task> loaded = reload(file);
+        assertEquals(1, loaded.size());
+        assertEquals("only one", loaded.get(0).getDescription());
+    }
+}
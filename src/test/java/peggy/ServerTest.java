@@ -0,0 +1,93 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ServerTest {
+    private static final int CLIENTS = 32;
+    private static final int TASKS_PER_CLIENT = 100;
+
+    @TempDir
+    Path tempDir;
+
+    // sends one command and returns the response, which ends with an empty line
+    private static String send(Socket socket, BufferedReader in, String command) throws IOException {
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(command + "\n");
+        out.flush();
+        return readResponse(in);
+    }
+
+    private static String readResponse(BufferedReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void manyClients_concurrentAddsAndQueries_allAppliedAndSaved() throws Exception {
+        String file = tempDir.resolve("peggy.txt").toString();
+        Peggy peggy = new Peggy(file);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try (Server server = new Server(peggy, 0)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                String tag = "ca" + c + "z";
+                results.add(pool.submit(() -> {
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                            BufferedReader in = new BufferedReader(
+                                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                        assertTrue(readResponse(in).contains("Hello! I'm Peggy"));
+                        for (int i = 0; i < TASKS_PER_CLIENT; i++) {
+                            assertTrue(send(socket, in, "todo " + tag + " task " + i).contains("Got it."));
+                            if (i % 10 == 0) {
+                                assertTrue(send(socket, in, "list 1 5").contains("1. "));
+                                assertTrue(send(socket, in, "find ~tasks").contains("1. "));
+                            }
+                        }
+                        String found = send(socket, in, "find " + tag);
+                        send(socket, in, "bye");
+                        return found;
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                String found = result.get();
+                assertTrue(found.contains(TASKS_PER_CLIENT + ". "));
+                assertFalse(found.contains((TASKS_PER_CLIENT + 1) + ". "));
+            }
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                readResponse(in);
+                assertTrue(send(socket, in, "list 1 1").contains("of " + CLIENTS * TASKS_PER_CLIENT + "."));
+            }
+        } finally {
+            pool.shutdownNow();
+            peggy.close();
+        }
+        assertEquals(CLIENTS * TASKS_PER_CLIENT,
+                new Storage(file, true, Storage.DEFAULT_COMPACTION_THRESHOLD).load().size());
+    }
+}
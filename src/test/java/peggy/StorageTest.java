@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -57,4 +58,235 @@ public class StorageTest {
         assertTrue(lines.get(1).contains("D | 0 | return book"));
         assertTrue(lines.get(2).contains("E | 0 | project meeting"));
     }
+
+    @Test
+    void load_journaledMutations_replayedOnTopOfSnapshot() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+
+        ArrayList<Task> original = new ArrayList<>();
+        original.add(new ToDo("read book"));
+        storage.save(original);
+
+        storage.append(Journal.addRecord(new Deadline("return book", "2019-12-02T18:00")));
+        storage.append(Journal.markRecord(1, true));
+        storage.append(Journal.deleteRecord(0));
+
+        ArrayList<Task> loaded = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.get(0) instanceof Deadline);
+        assertTrue(loaded.get(0).isDone());
+    }
+
+    @Test
+    void append_afterStaleJournalIgnored_keepsNewRecordsOnReload() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+        ArrayList<Task> original = new ArrayList<>();
+        original.add(new ToDo("read book"));
+        storage.save(original);
+        // as if the app stopped after moving the snapshot into place but before resetting the journal
+        Files.writeString(tempDir.resolve("peggy.txt.journal"), "# base 0\nA | T | 0 | already saved\n");
+
+        Storage reopened = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+        assertEquals(1, reopened.load().size());
+        reopened.append(Journal.addRecord(new ToDo("after recovery")));
+        reopened.close();
+
+        ArrayList<Task> loaded = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+        assertEquals(2, loaded.size());
+        assertEquals("after recovery", loaded.get(1).getDescription());
+    }
+
+    @Test
+    void save_journaled_resetsJournalForNewSnapshot() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, 0);
+        ArrayList<Task> tasks = storage.load();
+
+        tasks.add(new ToDo("read book"));
+        storage.append(Journal.addRecord(tasks.get(0)));
+        assertTrue(storage.isCompactionDue());
+
+        storage.save(tasks);
+        assertEquals(List.of("# base 1"), Files.readAllLines(tempDir.resolve("peggy.txt.journal")));
+        assertEquals(1, new Storage(file.toString(), true, 0).load().size());
+    }
+
+    @Test
+    void load_commentsMalformedAndCrlfLines_skippedLikeBefore() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Files.writeString(file, "# comment\r\n"
+                + "\r\n"
+                + "T|1|read  book\r\n"
+                + "D | 0 | no date\n"
+                + "X | 0 | unknown type\n"
+                + "T | 0 |   \n"
+                + "E | 0 | meeting | 2019-12-03T10:00 | 2019-12-03T12:00");
+
+        ArrayList<Task> loaded = new Storage(file.toString()).load();
+
+        assertEquals(2, loaded.size());
+        assertEquals("read  book", loaded.get(0).getDescription());
+        assertTrue(loaded.get(0).isDone());
+        assertTrue(loaded.get(1) instanceof Event);
+    }
+
+    @Test
+    void parallelLoad_smallChunks_matchesSequentialLoad() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        StringBuilder text = new StringBuilder("# generation 3\n");
+        String[] endings = {"\n", "\r\n", "\r", "\n\n"};
+        for (int i = 0; i < 500; i++) {
+            switch (i % 3) {
+                case 0:
+                    text.append("T | ").append(i % 2).append(" | task ").append(i);
+                    break;
+                case 1:
+                    text.append("D | 0 | task ").append(i).append(" | 2019-12-02T18:00");
+                    break;
+                default:
+                    text.append("E | 1 | task ").append(i).append(" | 2019-12-03T10:00 | 2019-12-03T12:00");
+                    break;
+            }
+            text.append(i % 50 == 7 ? "\n# comment\n" : endings[i % endings.length]);
+        }
+        text.append("T | 0 | last line without a terminator");
+        Files.writeString(file, text);
+
+        List<Task> sequential = new Storage(file.toString()).load();
+        for (int chunkSize : new int[] {1, 37, 64, 1000, 1 << 20}) {
+            List<Task> parallel = new ArrayList<>();
+            ParallelLoader.load(file, parallel, chunkSize);
+            assertEquals(501, parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(Storage.format(sequential.get(i)), Storage.format(parallel.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void load_pastParallelThreshold_readsGenerationAndReplaysJournal() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, Long.MAX_VALUE);
+        String filler = "x".repeat(8 * 1024);
+        ArrayList<Task> original = new ArrayList<>();
+        for (long bytes = 0; bytes < ParallelLoader.THRESHOLD; bytes += filler.length()) {
+            original.add(new ToDo(original.size() + " " + filler));
+        }
+        storage.save(original);
+        storage.append(Journal.deleteRecord(0));
+        storage.append(Journal.markRecord(0, true));
+        storage.close();
+
+        ArrayList<Task> loaded = new Storage(file.toString(), true, Long.MAX_VALUE).load();
+        assertEquals(original.size() - 1, loaded.size());
+        assertTrue(loaded.get(0).getDescription().startsWith("1 "));
+        assertTrue(loaded.get(0).isDone());
+        assertTrue(loaded.get(loaded.size() - 1).getDescription().startsWith((original.size() - 1) + " "));
+    }
+
+    @Test
+    void convert_textToBinaryAndBack_preservesTasks() throws Exception {
+        Path text = tempDir.resolve("peggy.txt");
+        Files.writeString(text, "T | 1 | read book\n"
+                + "D | 0 | read book | 2019-12-02T18:00:30\n"
+                + "E | 0 | project meeting | 2019-12-03T10:00 | 2019-12-03T12:00\n");
+        Path binary = tempDir.resolve("peggy.bin");
+        Path back = tempDir.resolve("back.txt");
+
+        assertEquals(3, Storage.convert(text.toString(), binary.toString(), Storage.Format.BINARY));
+        Storage.convert(binary.toString(), back.toString(), Storage.Format.TEXT);
+
+        Storage storage = new Storage(binary.toString());
+        ArrayList<Task> loaded = storage.load();
+        assertEquals(Storage.Format.BINARY, storage.getFormat());
+        assertEquals(LocalDateTime.of(2019, 12, 2, 18, 0, 30), ((Deadline) loaded.get(1)).getBy());
+        assertEquals(Files.readAllLines(text), Files.readAllLines(back));
+    }
+
+    @Test
+    void load_journaledRangeRecords_replayedInOnePass() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+        ArrayList<Task> original = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            original.add(new ToDo("task " + i));
+        }
+        storage.save(original);
+
+        storage.append(Journal.markRecord(new int[] {0, 1, 2, 7}, true));
+        storage.append(Journal.deleteRecord(new int[] {1, 3, 4, 5, 9}));
+
+        ArrayList<Task> loaded = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+        assertEquals(5, loaded.size());
+        assertEquals("task 0", loaded.get(0).getDescription());
+        assertTrue(loaded.get(0).isDone());
+        assertEquals("task 2", loaded.get(1).getDescription());
+        assertEquals("task 6", loaded.get(2).getDescription());
+        assertEquals("task 7", loaded.get(3).getDescription());
+        assertTrue(loaded.get(3).isDone());
+        assertEquals("task 8", loaded.get(4).getDescription());
+    }
+
+    @Test
+    void loadLazily_journaledMutations_matchEagerLoad() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Storage storage = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD);
+        ArrayList<Task> original = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            original.add(i % 3 == 0 ? new Deadline("task " + i, "2019-12-02T18:00") : new ToDo("task " + i));
+        }
+        storage.save(original);
+        storage.append(Journal.markRecord(new int[] {0, 1, 2, 7}, true));
+        storage.append(Journal.deleteRecord(new int[] {1, 3, 4, 5, 9}));
+        storage.append(Journal.addRecord(new ToDo("added")));
+        storage.append(Journal.markRecord(1, false));
+
+        ArrayList<Task> eager = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD).load();
+        LazyTaskStore lazy = new Storage(file.toString(), true, Storage.DEFAULT_COMPACTION_THRESHOLD).loadLazily();
+
+        assertArrayEquals(new int[] {0, 3}, lazy.indexesWithStatus(true));
+        assertEquals(eager.size(), lazy.size());
+        for (int i = 0; i < eager.size(); i++) {
+            assertEquals(Storage.format(eager.get(i)), Storage.format(lazy.get(i)));
+        }
+    }
+
+    @Test
+    void loadLazily_invalidDate_skippedLikeLoad() throws Exception {
+        Path file = tempDir.resolve("peggy.txt");
+        Files.writeString(file, "T | 0 | read book\nD | 1 | return book | not a date\n"
+                + "E | 0 | party | 2026-05-02T18:00 | later\nD | 0 | essay | 2026-05-01T12:00\n");
+
+        LazyTaskStore lazy = new Storage(file.toString()).loadLazily();
+        List<Task> eager = new Storage(file.toString()).load();
+
+        assertEquals(2, lazy.size());
+        assertEquals("read book", lazy.get(0).getDescription());
+        assertEquals("essay", lazy.get(1).getDescription());
+        assertEquals(eager.toString(), lazy.toString());
+    }
+
+    @Test
+    void loadLazily_datesInEveryShape_keepsExactlyTheLinesLoadKeeps() throws Exception {
+        String[] dates = {
+            "2019-12-02T18:00", "2019-12-02T18:00:30.5", "2019-12-02T24:00", "2019-02-29T00:00",
+            "2/12/2019 1800", "2/12/2019 18:00", "31/2/2019", "2019-12-02 1800", "2019-02-30", "2019-02-30 1800",
+            "+12019-01-01T00:00", "\u0662019-01-01", "2019-12-02T18:00\u00e9", "12/2019", "not a date", ""
+        };
+        StringBuilder text = new StringBuilder();
+        for (String d : dates) {
+            text.append("D | 0 | ").append(d.isEmpty() ? "nothing" : d).append(" | ").append(d).append('\n');
+            text.append("E | 1 | ").append(d).append(" | 2019-12-02T18:00 | ").append(d).append('\n');
+        }
+        Path file = tempDir.resolve("peggy.txt");
+        Files.writeString(file, text);
+
+        LazyTaskStore lazy = new Storage(file.toString()).loadLazily();
+        List<Task> eager = new Storage(file.toString()).load();
+
+        assertEquals(eager.toString(), lazy.toString());
+        assertTrue(eager.size() > 8 && eager.size() < dates.length * 2);
+    }
 }
@@ -0,0 +1,210 @@
+package peggy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import peggy.task.Deadline;
+import peggy.task.Event;
+import peggy.task.Task;
+import peggy.task.ToDo;
+
+public class TaskListTest {
+
+    private static String descriptions(TaskList list) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < list.size(); i++) {
+            sb.append(list.get(i).getDescription()).append(';');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void find_substringOfWord_matchesLikeContains() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("buy Notebook"));
+        list.add(new ToDo("cook"));
+
+        assertEquals("read book;buy Notebook;", descriptions(list.find("BOOK")));
+        assertEquals("", descriptions(list.find("books")));
+    }
+
+    @Test
+    void find_multipleWords_matchesExactPhraseOnly() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("book read"));
+        list.add(new ToDo("reread bookshelf"));
+
+        assertEquals("read book;reread bookshelf;", descriptions(list.find("read book")));
+    }
+
+    @Test
+    void find_afterAddAndRemove_indexStaysInSync() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("return book"));
+        assertEquals(2, list.find("book").size());
+
+        list.remove(0);
+        list.add(new ToDo("book club"));
+
+        assertEquals("return book;book club;", descriptions(list.find("book")));
+    }
+
+    @Test
+    void fuzzyFind_typo_ranksClosestFirst() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("assign roles"));
+        list.add(new ToDo("submit assignment"));
+        list.add(new ToDo("buy milk"));
+
+        TaskList matches = list.fuzzyFind("asignment", 10);
+
+        assertEquals("submit assignment;assign roles;", descriptions(matches));
+        assertEquals("submit assignment;", descriptions(list.fuzzyFind("asignment", 1)));
+    }
+
+    @Test
+    void fuzzyFind_afterManyWordsAddedAndDeleted_stillRanksLiveTasks() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("submit assignment"));
+        for (int i = 0; i < 5000; i++) {
+            list.add(new ToDo("scratch" + i)); // a new word each time, removed again with its task
+            list.remove(1);
+        }
+        list.add(new ToDo("assign roles"));
+
+        assertEquals("submit assignment;assign roles;", descriptions(list.fuzzyFind("asignment", 10)));
+        assertEquals("", descriptions(list.fuzzyFind("scratch42", 10)));
+    }
+
+    @Test
+    void between_eventsAndDeadlines_overlappingInStartOrder() {
+        TaskList list = new TaskList();
+        list.add(new Event("trip", LocalDateTime.of(2026, 11, 1, 9, 0), LocalDateTime.of(2026, 11, 5, 18, 0)));
+        list.add(new ToDo("read book"));
+        list.add(new Deadline("report", LocalDateTime.of(2026, 11, 3, 12, 0)));
+        list.add(new Deadline("essay", LocalDateTime.of(2026, 11, 4, 0, 0)));
+        list.add(new Event("lunch", LocalDateTime.of(2026, 11, 3, 12, 0), LocalDateTime.of(2026, 11, 3, 13, 0)));
+
+        TaskList matches = list.between(LocalDateTime.of(2026, 11, 3, 0, 0), LocalDateTime.of(2026, 11, 3, 23, 59));
+        assertEquals("trip;report;lunch;", descriptions(matches));
+
+        list.remove(0);
+        assertEquals("report;lunch;essay;",
+                descriptions(list.between(LocalDateTime.of(2026, 11, 3, 12, 0), LocalDateTime.of(2026, 11, 4, 0, 0))));
+    }
+
+    @Test
+    void upcomingAndOverdue_afterMarkAndDelete_queueStaysInSync() {
+        LocalDateTime now = LocalDateTime.of(2026, 11, 3, 12, 0);
+        TaskList list = new TaskList();
+        list.add(new Deadline("late report", now.minusDays(1)));
+        list.add(new Event("meeting", now.plusHours(1), now.plusHours(2)));
+        list.add(new ToDo("read book"));
+        list.add(new Deadline("essay", now.plusDays(2)));
+        list.add(new Deadline("quiz", now.plusDays(1)));
+
+        assertEquals("meeting;quiz;", descriptions(list.upcoming(now, 2)));
+        assertEquals("late report;", descriptions(list.overdue(now)));
+
+        list.markAsDone(1);
+        list.markAsDone(0);
+        list.remove(4);
+        assertEquals("essay;", descriptions(list.upcoming(now, 5)));
+        assertEquals("", descriptions(list.overdue(now)));
+
+        list.markAsNotDone(1);
+        assertEquals("meeting;essay;", descriptions(list.upcoming(now, 5)));
+    }
+
+    @Test
+    void snapshot_laterMarks_doNotChangeSnapshot() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new Event("meeting", LocalDateTime.of(2019, 12, 2, 18, 0), LocalDateTime.of(2019, 12, 2, 20, 0)));
+        list.markAsDone(1);
+
+        List<Task> snapshot = list.snapshot();
+        list.markAsDone(0);
+        list.markAsNotDone(1);
+        list.remove(0);
+
+        assertEquals(2, snapshot.size());
+        assertEquals("T | 0 | read book", snapshot.get(0).toFileString());
+        assertEquals("E | 1 | meeting | 2019-12-02T18:00 | 2019-12-02T20:00", snapshot.get(1).toFileString());
+    }
+
+    @Test
+    void removeAll_scatteredIndexes_compactsInOrderAndKeepsIndexesInSync() {
+        TaskList list = new TaskList();
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("return book"));
+        list.add(new ToDo("essay"));
+        list.add(new ToDo("book club"));
+        list.add(new ToDo("gym"));
+        assertEquals(3, list.find("book").size());
+
+        List<Task> removed = list.removeAll(new int[] {0, 3, 4});
+
+        assertEquals("read book;book club;gym;", descriptions(new TaskList(new ArrayList<>(removed))));
+        assertEquals("return book;essay;", descriptions(list));
+        assertEquals("return book;", descriptions(list.find("book")));
+    }
+
+    @Test
+    void columnar_changesAndQueries_matchTree() {
+        LocalDateTime now = LocalDateTime.of(2026, 11, 3, 12, 0);
+        List<Task> tasks = List.of(
+                new Deadline("late report", now.minusDays(1)),
+                new Event("meeting", now.plusHours(1), now.plusHours(2)),
+                new ToDo("read book"),
+                new ToDo("read book"),
+                new Deadline("essay", now.plusDays(2).withSecond(30)));
+        TaskList tree = new TaskList(tasks, TaskList.Backend.TREE);
+        TaskList columnar = new TaskList(tasks, TaskList.Backend.COLUMNAR);
+
+        for (TaskList list : List.of(tree, columnar)) {
+            list.add(new ToDo("book club"));
+            list.markAsDone(2);
+            list.removeAll(new int[] {0, 3});
+            list.add(new Event("trip", now.plusDays(3), now.plusDays(4)));
+            list.markAsNotDone(1);
+            list.markAsDone(0);
+        }
+
+        assertEquals(tree.size(), columnar.size());
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(tree.get(i).toFileString(), columnar.get(i).toFileString());
+        }
+        assertEquals(descriptions(tree.find("book")), descriptions(columnar.find("book")));
+        assertEquals(descriptions(tree.upcoming(now, 5)), descriptions(columnar.upcoming(now, 5)));
+        assertEquals(descriptions(tree.between(now, now.plusDays(5))),
+                descriptions(columnar.between(now, now.plusDays(5))));
+        assertEquals("E | 1 | meeting | 2026-11-03T13:00 | 2026-11-03T14:00", columnar.get(0).toFileString());
+        assertEquals("D | 0 | essay | 2026-11-05T12:00:30", columnar.get(2).toFileString());
+    }
+
+    @Test
+    void columnar_snapshot_doesNotSeeLaterChanges() {
+        TaskList list = new TaskList(new ArrayList<>(), TaskList.Backend.COLUMNAR);
+        list.add(new ToDo("read book"));
+        list.add(new ToDo("gym"));
+
+        List<Task> snapshot = list.snapshot();
+        list.markAsDone(0);
+        list.remove(1);
+        list.add(new ToDo("essay"));
+
+        assertEquals("T | 0 | read book", snapshot.get(0).toFileString());
+        assertEquals("T | 0 | gym", snapshot.get(1).toFileString());
+        assertEquals("read book;essay;", descriptions(list));
+    }
+}